@@ -0,0 +1,55 @@
+package com.github.rmannibucau.jaxrsanalyzer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedAsciidocBackend;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+public class AsciidocBackendBenchmark {
+
+    @Param({ "100", "1000" })
+    private int paths;
+
+    @Param("3")
+    private int methodsPerPath;
+
+    @Param("3")
+    private int typeDepth;
+
+    @Param("10")
+    private int enumCardinality;
+
+    private Project project;
+
+    private EnrichedAsciidocBackend backend;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        project = ProjectGenerator.generate(paths, methodsPerPath, typeDepth, enumCardinality);
+        backend = new EnrichedAsciidocBackend();
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return backend.render(project);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.rmannibucau.jaxrsanalyzer.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.HttpMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.MethodParameter;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ParameterType;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Response;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeIdentifier;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeRepresentation;
+
+// builds a synthetic model close to what the analyzer produces for a real application
+final class ProjectGenerator {
+
+    private static final HttpMethod[] METHODS = {
+            HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.PATCH
+    };
+
+    private static final TypeIdentifier STRING = TypeIdentifier.ofType("Ljava/lang/String;");
+
+    private static final TypeIdentifier LONG = TypeIdentifier.ofType("Ljava/lang/Long;");
+
+    private ProjectGenerator() {
+        // no-op
+    }
+
+    /**
+     * @param paths number of resource paths.
+     * @param methodsPerPath number of HTTP methods per path (max 5).
+     * @param typeDepth depth of the DTO graph returned by each path.
+     * @param enumCardinality number of values of the enum each DTO references.
+     * @return a project with the requested shape.
+     */
+    static Project generate(final int paths, final int methodsPerPath, final int typeDepth, final int enumCardinality) {
+        final Resources resources = new Resources();
+        resources.setBasePath("api");
+        final Map<TypeIdentifier, TypeRepresentation> types = resources.getTypeRepresentations();
+
+        final TypeIdentifier status = TypeIdentifier.ofType("Lcom/company/model/Status;");
+        types.put(status, TypeRepresentation.ofEnum(status,
+                IntStream.range(0, enumCardinality).mapToObj(i -> "VALUE_" + i).toArray(String[]::new)));
+
+        final TypeIdentifier error = TypeIdentifier.ofType("Lcom/company/model/ErrorEnvelope;");
+        final Map<String, TypeIdentifier> errorProperties = new HashMap<>();
+        errorProperties.put("code", LONG);
+        errorProperties.put("message", STRING);
+        types.put(error, TypeRepresentation.ofConcrete(error, errorProperties));
+
+        for (int i = 0; i < paths; i++) {
+            // same simple names in several packages to exercise definition collisions
+            final TypeIdentifier dto = createDto(types, "com/company/module" + (i % 10) + "/Dto" + (i / 10), typeDepth,
+                    status);
+            final TypeIdentifier page = TypeIdentifier.ofType("Ljava/util/List<" + dto.getType() + ">;");
+            types.put(page, TypeRepresentation.ofCollection(page, types.get(dto)));
+
+            final String path = "resource" + (i % 20) + "/item" + i + (i % 3 == 0 ? "/{id}" : "");
+            for (int m = 0; m < Math.min(methodsPerPath, METHODS.length); m++) {
+                final HttpMethod httpMethod = METHODS[m];
+                final ResourceMethod method = new ResourceMethod(httpMethod,
+                        "Handles " + httpMethod + " on " + path + ".\n    Some more documentation\n    on several lines.");
+                method.getRequestMediaTypes().add("application/json");
+                method.getResponseMediaTypes().add("application/json");
+                method.getMethodParameters().add(parameter(STRING, ParameterType.QUERY, "filter", "*"));
+                method.getMethodParameters().add(parameter(LONG, ParameterType.QUERY, "limit", "50"));
+                method.getMethodParameters().add(parameter(STRING, ParameterType.HEADER, "X-Request-Id", null));
+                method.getMethodParameters().add(parameter(status, ParameterType.QUERY, "status", null));
+                if (path.endsWith("{id}")) {
+                    method.getMethodParameters().add(parameter(LONG, ParameterType.PATH, "id", null));
+                }
+                if (httpMethod == HttpMethod.POST || httpMethod == HttpMethod.PUT) {
+                    method.setRequestBody(dto);
+                    method.setRequestBodyDescription("the payload");
+                }
+                final Response ok = new Response(httpMethod == HttpMethod.GET ? page : dto);
+                ok.getHeaders().add("ETag");
+                method.getResponses().put(200, ok);
+                method.getResponses().put(400, new Response(error));
+                method.getResponses().put(404, new Response(error));
+                resources.addMethod(path, method);
+            }
+        }
+        return new Project("benchmark", "1.0.0", resources);
+    }
+
+    private static TypeIdentifier createDto(final Map<TypeIdentifier, TypeRepresentation> types, final String name,
+            final int depth, final TypeIdentifier status) {
+        final TypeIdentifier identifier = TypeIdentifier.ofType('L' + name + ';');
+        final Map<String, TypeIdentifier> properties = new HashMap<>();
+        properties.put("id", LONG);
+        properties.put("name", STRING);
+        properties.put("status", status);
+        if (depth > 1) {
+            properties.put("child", createDto(types, name + "Level" + depth, depth - 1, status));
+        }
+        types.put(identifier, TypeRepresentation.ofConcrete(identifier, properties));
+        return identifier;
+    }
+
+    private static MethodParameter parameter(final TypeIdentifier type, final ParameterType parameterType,
+            final String name, final String defaultValue) {
+        final MethodParameter parameter = new MethodParameter(type, parameterType);
+        parameter.setName(name);
+        parameter.setDefaultValue(defaultValue);
+        return parameter;
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.rmannibucau.jaxrsanalyzer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+public class SwaggerBackendBenchmark {
+
+    @Param({ "100", "1000" })
+    private int paths;
+
+    @Param("3")
+    private int methodsPerPath;
+
+    @Param("3")
+    private int typeDepth;
+
+    @Param("10")
+    private int enumCardinality;
+
+    @Param({ "false", "true" })
+    private boolean jsonPatch;
+
+    @Param({ "1", "4" })
+    private int parallelism;
+
+    private Project project;
+
+    private EnrichedSwaggerBackend backend;
+
+    private Path patch;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        project = ProjectGenerator.generate(paths, methodsPerPath, typeDepth, enumCardinality);
+
+        final Map<String, String> config = new HashMap<>();
+        if (jsonPatch) {
+            patch = Files.createTempFile("jaxrs-analyzer-benchmark", ".json");
+            Files.write(patch, ("[{\"op\":\"replace\",\"path\":\"/info/title\",\"value\":\"patched\"},"
+                    + "{\"op\":\"remove\",\"path\":\"/paths/~1resource0~1item0~1{id}\"}]").getBytes("UTF-8"));
+            config.put(EnrichedSwaggerBackend.SwaggerOptions.JSON_PATCH, patch.toAbsolutePath().toString());
+        }
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_PARALLELISM, Integer.toString(parallelism));
+        backend = new EnrichedSwaggerBackend();
+        backend.configure(config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (patch != null) {
+            Files.delete(patch);
+        }
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return backend.render(project);
+    }
+}
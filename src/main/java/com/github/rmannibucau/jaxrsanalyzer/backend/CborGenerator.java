@@ -0,0 +1,303 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerationException;
+import javax.json.stream.JsonGenerator;
+
+// CBOR (RFC 7049) encoder behind the JSON-P generator API, containers use indefinite lengths to be able to stream
+class CborGenerator implements JsonGenerator {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1 << 5;
+    private static final int MAJOR_BYTES = 2 << 5;
+    private static final int MAJOR_TEXT = 3 << 5;
+    private static final int MAJOR_TAG = 6 << 5;
+    private static final int MAJOR_ARRAY = 4 << 5;
+
+    private static final int START_ARRAY = 0x9F;
+    private static final int START_MAP = 0xBF;
+    private static final int BREAK = 0xFF;
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int DOUBLE = 0xFB;
+
+    private static final int TAG_POSITIVE_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int TAG_DECIMAL_FRACTION = 4;
+
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final OutputStream output;
+
+    private int depth;
+
+    CborGenerator(final OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public JsonGenerator writeStartObject() {
+        depth++;
+        return writeByte(START_MAP);
+    }
+
+    @Override
+    public JsonGenerator writeStartObject(final String name) {
+        return writeKey(name).writeStartObject();
+    }
+
+    @Override
+    public JsonGenerator writeKey(final String name) {
+        return writeText(name);
+    }
+
+    @Override
+    public JsonGenerator writeStartArray() {
+        depth++;
+        return writeByte(START_ARRAY);
+    }
+
+    @Override
+    public JsonGenerator writeStartArray(final String name) {
+        return writeKey(name).writeStartArray();
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final JsonValue value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final String value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final BigInteger value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final BigDecimal value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final int value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final long value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final double value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final boolean value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator writeNull(final String name) {
+        return writeKey(name).writeNull();
+    }
+
+    @Override
+    public JsonGenerator writeEnd() {
+        if (depth == 0) {
+            throw new JsonGenerationException("writeEnd() called without a started object or array");
+        }
+        depth--;
+        return writeByte(BREAK);
+    }
+
+    @Override
+    public JsonGenerator write(final JsonValue value) {
+        switch (value.getValueType()) {
+        case OBJECT:
+            writeStartObject();
+            for (final Map.Entry<String, JsonValue> entry : ((JsonObject) value).entrySet()) {
+                write(entry.getKey(), entry.getValue());
+            }
+            return writeEnd();
+        case ARRAY:
+            writeStartArray();
+            for (final JsonValue item : (JsonArray) value) {
+                write(item);
+            }
+            return writeEnd();
+        case STRING:
+            return write(((JsonString) value).getString());
+        case NUMBER:
+            final JsonNumber number = (JsonNumber) value;
+            return number.isIntegral() ? write(number.bigIntegerValue()) : write(number.bigDecimalValue());
+        case TRUE:
+            return write(true);
+        case FALSE:
+            return write(false);
+        case NULL:
+            return writeNull();
+        default:
+            throw new JsonGenerationException("Unsupported value: " + value);
+        }
+    }
+
+    @Override
+    public JsonGenerator write(final String value) {
+        return writeText(value);
+    }
+
+    @Override
+    public JsonGenerator write(final BigDecimal value) {
+        // decimal fraction: [exponent, mantissa]
+        writeHeader(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+        writeHeader(MAJOR_ARRAY, 2);
+        write(-value.scale());
+        return write(value.unscaledValue());
+    }
+
+    @Override
+    public JsonGenerator write(final BigInteger value) {
+        if (value.compareTo(MIN_LONG) >= 0 && value.compareTo(MAX_LONG) <= 0) {
+            return write(value.longValue());
+        }
+        final boolean negative = value.signum() < 0;
+        // negative bignums encode -1 - n
+        byte[] bytes = (negative ? value.negate().subtract(BigInteger.ONE) : value).toByteArray();
+        if (bytes[0] == 0) { // sign byte
+            final byte[] unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            bytes = unsigned;
+        }
+        writeHeader(MAJOR_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+        writeHeader(MAJOR_BYTES, bytes.length);
+        return writeBytes(bytes);
+    }
+
+    @Override
+    public JsonGenerator write(final int value) {
+        return write((long) value);
+    }
+
+    @Override
+    public JsonGenerator write(final long value) {
+        if (value < 0) {
+            writeHeader(MAJOR_NEGATIVE, -1 - value);
+        } else {
+            writeHeader(MAJOR_UNSIGNED, value);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(final double value) {
+        if (Double.isInfinite(value) || Double.isNaN(value)) { // same contract as JSON generators
+            throw new NumberFormatException("Not a JSON number: " + value);
+        }
+        writeByte(DOUBLE);
+        final long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (bits >>> shift));
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(final boolean value) {
+        return writeByte(value ? TRUE : FALSE);
+    }
+
+    @Override
+    public JsonGenerator writeNull() {
+        return writeByte(NULL);
+    }
+
+    @Override
+    public void close() {
+        if (depth != 0) {
+            throw new JsonGenerationException("Generator closed with " + depth + " unclosed object(s) or array(s)");
+        }
+        try {
+            output.close();
+        } catch (final IOException e) {
+            throw new JsonException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            output.flush();
+        } catch (final IOException e) {
+            throw new JsonException(e.getMessage(), e);
+        }
+    }
+
+    private JsonGenerator writeText(final String value) {
+        final byte[] bytes = value.getBytes(UTF_8);
+        writeHeader(MAJOR_TEXT, bytes.length);
+        return writeBytes(bytes);
+    }
+
+    // major type + argument using the shortest encoding
+    private void writeHeader(final int majorType, final long value) {
+        if (value < 24) {
+            writeByte(majorType | (int) value);
+        } else if (value < 0x100) {
+            writeByte(majorType | 24);
+            writeByte((int) value);
+        } else if (value < 0x10000) {
+            writeByte(majorType | 25);
+            writeByte((int) (value >> 8));
+            writeByte((int) value);
+        } else if (value < 0x100000000L) {
+            writeByte(majorType | 26);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte((int) (value >> shift));
+            }
+        } else {
+            writeByte(majorType | 27);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+    }
+
+    private JsonGenerator writeByte(final int value) {
+        try {
+            output.write(value);
+        } catch (final IOException e) {
+            throw new JsonException(e.getMessage(), e);
+        }
+        return this;
+    }
+
+    private JsonGenerator writeBytes(final byte[] value) {
+        try {
+            output.write(value);
+        } catch (final IOException e) {
+            throw new JsonException(e.getMessage(), e);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// buffers the writes in a pooled direct buffer before handing them to the channel, closing it does not close the channel
+class ChannelOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    // direct buffers are expensive to allocate and only released by the GC so they are reused between renders
+    private static final Queue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private final WritableByteChannel channel;
+
+    private ByteBuffer buffer;
+
+    private long written;
+
+    ChannelOutputStream(final WritableByteChannel channel) {
+        this.channel = channel;
+        final ByteBuffer pooled = BUFFERS.poll();
+        this.buffer = pooled == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : pooled;
+    }
+
+    long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+        written++;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        ensureOpen();
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            final int chunk = Math.min(remaining, buffer.remaining());
+            buffer.put(bytes, position, chunk);
+            position += chunk;
+            remaining -= chunk;
+        }
+        written += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (buffer != null) {
+            drain();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            ((Buffer) buffer).clear();
+            if (BUFFERS.size() < MAX_POOLED_BUFFERS) {
+                BUFFERS.offer(buffer);
+            }
+            buffer = null;
+        }
+    }
+
+    // the Buffer casts keep the Java 8 signatures when compiled with a newer JDK (ByteBuffer overrides them since Java 9)
+    private void drain() throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -1,21 +1,381 @@
 package com.github.rmannibucau.jaxrsanalyzer.backend;
 
 import static java.util.Optional.ofNullable;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toCollection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import com.sebastian_daschner.jaxrs_analyzer.backend.asciidoc.AsciiDocBackend;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
 import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
 
+/**
+ * AsciiDoc backend streaming the document and adding the method descriptions.
+ *
+ * With asciidocParallelism the resources are split in sections by their first path segment, each section is rendered
+ * in its own buffer on a worker pool and the sections are written in order so the document is the same.
+ * With asciidocIncludes=directory each section is written in its own file of this directory and the document only
+ * has the include:: directives. Asciidoctor resolves them from the directory of the document so they are relative
+ * to the target of {@link #render(Project, Path)}, the other render methods don't know where the document goes and
+ * expect it aside the include directory. The written files are listed in a .includes file of the directory so the
+ * next render deletes the includes of the sections which no longer exist, the other files are never deleted.
+ * The include directory can't be the directory of the document.
+ */
 public class EnrichedAsciidocBackend extends AsciiDocBackend {
 
+    public static final String ASCIIDOC_PARALLELISM = "asciidocParallelism";
+
+    public static final String ASCIIDOC_INCLUDES = "asciidocIncludes";
+
+    private static final String EXTENSION = ".adoc";
+
+    // the includes written by the last render, one file name per line
+    private static final String MANIFEST = ".includes";
+
+    // guarded by the lock, reused between the chunks to not copy the builder in a string each time
+    private char[] chunk = new char[8192];
+
+    // passed to the section workers so they render like this backend
+    private Map<String, String> config = new HashMap<>();
+
+    private int parallelism = 1;
+
+    private Path includes;
+
+    @Override
+    public void configure(final Map<String, String> config) {
+        super.configure(config);
+        this.config = new HashMap<>(config);
+
+        if (config.containsKey(ASCIIDOC_PARALLELISM)) {
+            final int asciidocParallelism = Integer.parseInt(config.get(ASCIIDOC_PARALLELISM));
+
+            if (asciidocParallelism < 0) {
+                System.err.println("Please provide positive integer number for option --asciidocParallelism\n");
+                throw new IllegalArgumentException(
+                        "Please provide positive integer number for option --asciidocParallelism");
+            }
+
+            // 0 means "use all available cores"
+            parallelism = asciidocParallelism == 0 ? Runtime.getRuntime().availableProcessors() : asciidocParallelism;
+        }
+
+        if (config.containsKey(ASCIIDOC_INCLUDES)) {
+            final Path asciidocIncludes = Paths.get(config.get(ASCIIDOC_INCLUDES));
+
+            if (asciidocIncludes.getFileName() == null) {
+                System.err.println("Please provide a directory other than a root for option --asciidocIncludes\n");
+                throw new IllegalArgumentException(
+                        "Please provide a directory other than a root for option --asciidocIncludes");
+            }
+
+            includes = asciidocIncludes;
+        }
+    }
+
     @Override
     protected void appendMethod(final String baseUri, final String resource, final ResourceMethod resourceMethod) {
         super.appendMethod(baseUri, resource, resourceMethod);
         ofNullable(resourceMethod.getDescription())
-                .ifPresent(d -> builder.append(d.replaceAll("\n +", "\n")).append("\n\n"));
+                .ifPresent(d -> appendWithoutIndentation(builder, d).append("\n\n"));
     }
 
     @Override
     public String getName() {
         return "asciidoc"; // until https://github.com/sdaschner/jaxrs-analyzer-maven-plugin/issues/50 is fixed
     }
+
+    @Override
+    public byte[] render(final Project project) {
+        // upstream uses the platform encoding so keep it to produce the same output
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        render(project, new OutputStreamWriter(output, Charset.defaultCharset()));
+        return output.toByteArray();
+    }
+
+    /**
+     * Same as {@link #render(Project)} but the document is flushed to the writer after each method
+     * so the memory does not depend on the document size.
+     *
+     * @param project the project to render.
+     * @param writer the output, it is flushed but not closed.
+     */
+    public void render(final Project project, final Writer writer) {
+        render(project, new SortedResources(project.getResources()), writer, null);
+    }
+
+    /**
+     * Renders the project in a file with the platform encoding, like {@link #render(Project)}.
+     *
+     * @param project the project to render.
+     * @param target the file to write, the include:: directives are relative to its directory.
+     */
+    public void render(final Project project, final Path target) {
+        render(project, new SortedResources(project.getResources()), target);
+    }
+
+    // used by the composite backend to share the sorted model with the other backends
+    void render(final Project project, final SortedResources sortedResources, final Path target) {
+        final Path directory = target.toAbsolutePath().getParent();
+        // checked before the target is opened, the document would otherwise be truncated
+        if (includes != null && directory.normalize().equals(includes.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("The AsciiDoc output " + target
+                    + " can't be in the asciidocIncludes directory " + includes + ", please use another directory");
+        }
+        try {
+            Files.createDirectories(directory);
+            try (final Writer writer = Files.newBufferedWriter(target, Charset.defaultCharset())) {
+                render(project, sortedResources, writer, directory);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write AsciiDoc output to " + target, e);
+        }
+    }
+
+    // the document directory is null if unknown
+    private void render(final Project project, final SortedResources sortedResources, final Writer writer,
+            final Path documentDirectory) {
+        if (parallelism > 1 || includes != null) {
+            renderSections(project, sortedResources, writer, documentDirectory);
+            return;
+        }
+
+        lock.lock();
+        try {
+            init(project);
+            appendHeader();
+            drain(writer);
+
+            sortedResources.getPaths().forEach(resource -> sortedResources.getMethods(resource).forEach(method -> {
+                appendResourceMethod(resource, method);
+                drain(writer);
+            }));
+            writer.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write AsciiDoc output", e);
+        } finally {
+            builder = null;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #render(Project, Writer)} but using an output stream.
+     *
+     * @param project the project to render.
+     * @param output the output, it is flushed but not closed.
+     * @param charset the encoding to use.
+     */
+    public void render(final Project project, final OutputStream output, final Charset charset) {
+        render(project, new OutputStreamWriter(output, charset));
+    }
+
+    private void renderSections(final Project project, final SortedResources sortedResources, final Writer writer,
+            final Path documentDirectory) {
+        final List<List<String>> sections = toSections(sortedResources.getPaths());
+        final List<String> files = new ArrayList<>(sections.size());
+        final Path includeDirectory = includes == null ? null : includes.toAbsolutePath();
+        final Path relativeIncludes;
+        if (includeDirectory != null) {
+            final Set<String> usedFiles = new HashSet<>(singleton(MANIFEST));
+            sections.forEach(section -> files.add(FileNames.toFileName(toSegment(section.get(0)), usedFiles, EXTENSION)));
+            try {
+                Files.createDirectories(includeDirectory);
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Could not create " + includes, e);
+            }
+            final Path base = documentDirectory == null ? includeDirectory.getParent() : documentDirectory;
+            relativeIncludes = base.toAbsolutePath().relativize(includeDirectory);
+        } else {
+            relativeIncludes = null;
+        }
+
+        final ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            writer.write(newWorker().renderHeader(project));
+
+            // sections are merged back in order as soon as they are available, only a few are pending
+            // so the memory does not depend on the document size
+            final Deque<ForkJoinTask<String>> pending = new ArrayDeque<>();
+            for (int i = 0; i < sections.size(); i++) {
+                final List<String> section = sections.get(i);
+                final String file = includeDirectory == null ? null : files.get(i);
+                final Supplier<String> task = () -> {
+                    final String content = newWorker().renderSection(project, sortedResources, section);
+                    if (file == null) {
+                        return content;
+                    }
+                    writeInclude(includeDirectory.resolve(file), content);
+                    return "include::" + toIncludeTarget(relativeIncludes.resolve(file)) + "[]\n\n";
+                };
+                if (pool == null) {
+                    writer.write(task.get());
+                    continue;
+                }
+                pending.add(pool.submit(task::get));
+                if (pending.size() > parallelism * 2) {
+                    writer.write(pending.poll().join());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writer.write(pending.poll().join());
+            }
+            writer.flush();
+
+            if (includeDirectory != null) {
+                final Set<String> previousFiles = readPreviousIncludes(includeDirectory);
+                Files.write(includeDirectory.resolve(MANIFEST), files, UTF_8);
+                previousFiles.removeAll(files);
+                for (final String orphan : previousFiles) {
+                    Files.deleteIfExists(includeDirectory.resolve(orphan));
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write AsciiDoc output", e);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private EnrichedAsciidocBackend newWorker() {
+        final EnrichedAsciidocBackend worker = new EnrichedAsciidocBackend();
+        worker.configure(config);
+        return worker;
+    }
+
+    // the worker instances are used by a single render so they don't need the lock
+    private String renderHeader(final Project project) {
+        init(project);
+        appendHeader();
+        return builder.toString();
+    }
+
+    private String renderSection(final Project project, final SortedResources sortedResources, final List<String> paths) {
+        init(project);
+        paths.forEach(resource -> sortedResources.getMethods(resource).forEach(method -> appendResourceMethod(resource, method)));
+        return builder.toString();
+    }
+
+    private void init(final Project project) {
+        builder = new StringBuilder();
+        resources = project.getResources();
+        projectName = project.getName();
+        projectVersion = project.getVersion();
+    }
+
+    private void appendHeader() {
+        appendFirstLine();
+        builder.append(projectVersion).append("\n\n");
+    }
+
+    private void appendResourceMethod(final String resource, final ResourceMethod method) {
+        appendMethod(resources.getBasePath(), resource, method);
+        appendRequest(method);
+        appendResponse(method);
+        appendResourceEnd();
+    }
+
+    private void drain(final Writer writer) {
+        try {
+            final int length = builder.length();
+            if (chunk.length < length) {
+                chunk = new char[length];
+            }
+            builder.getChars(0, length, chunk, 0);
+            writer.write(chunk, 0, length);
+            builder.setLength(0); // keeps the capacity for the next chunk
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write AsciiDoc output", e);
+        }
+    }
+
+    // consecutive paths with the same first segment, like the sections of the swagger backend,
+    // keeping the sorted order so the sections concatenated give the sequential document
+    private static List<List<String>> toSections(final List<String> paths) {
+        final List<List<String>> sections = new ArrayList<>();
+        String current = null;
+        for (final String path : paths) {
+            final String segment = toSegment(path);
+            if (!segment.equals(current)) {
+                sections.add(new ArrayList<>());
+                current = segment;
+            }
+            sections.get(sections.size() - 1).add(path);
+        }
+        return sections;
+    }
+
+    private static String toSegment(final String path) {
+        final int slash = path.indexOf('/');
+        return slash < 0 ? path : path.substring(0, slash);
+    }
+
+    // asciidoctor expects forward slashes whatever the platform is
+    private static String toIncludeTarget(final Path relative) {
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    // the includes of the previous render, the files of the directory which are not in its manifest are not ours
+    private static Set<String> readPreviousIncludes(final Path directory) throws IOException {
+        final Path manifest = directory.resolve(MANIFEST);
+        final Path normalized = directory.normalize();
+        if (!Files.exists(manifest)) {
+            return new HashSet<>();
+        }
+        try (final Stream<String> lines = Files.lines(manifest, UTF_8)) {
+            return lines.filter(file -> file.endsWith(EXTENSION)
+                    && normalized.equals(normalized.resolve(file).normalize().getParent()))
+                    .collect(toCollection(HashSet::new));
+        }
+    }
+
+    // same encoding as the document
+    private static void writeInclude(final Path file, final String content) {
+        try (final Writer writer = Files.newBufferedWriter(file, Charset.defaultCharset())) {
+            writer.write(content);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+    }
+
+    // equivalent to text.replaceAll("\n +", "\n") without a regex nor an intermediate string
+    private static StringBuilder appendWithoutIndentation(final StringBuilder out, final String text) {
+        final int length = text.length();
+        int start = 0;
+        int newLine;
+        while ((newLine = text.indexOf('\n', start)) >= 0) {
+            out.append(text, start, newLine + 1);
+            start = newLine + 1;
+            while (start < length && text.charAt(start) == ' ') {
+                start++;
+            }
+        }
+        return out.append(text, start, length);
+    }
 }
@@ -0,0 +1,399 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_CACHE;
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_METRICS_REPORT;
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_SHARDS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonString;
+import javax.json.spi.JsonProvider;
+
+import com.sebastian_daschner.jaxrs_analyzer.LogProvider;
+import com.sebastian_daschner.jaxrs_analyzer.analysis.ProjectAnalyzer;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+
+/**
+ * Renders the Swagger output of many projects in a single long lived JVM, the renders run concurrently
+ * on a bounded executor and the projects using the same options share the same backend (compiled jsonPatch,
+ * listeners, generator configuration), the files written by a render are not part of these options.
+ *
+ * A manifest is a JSON file like:
+ * <pre>
+ * {
+ *   "options": { "swaggerSchemes": "https" },
+ *   "projects": [
+ *     {
+ *       "name": "users", "version": "1.0",
+ *       "classPaths": ["users/target/classes"], "sourcePaths": ["users/src/main/java"], "dependencies": [],
+ *       "output": "users/target/swagger.json",
+ *       "options": { "domain": "users.company.com" }
+ *     }
+ *   ]
+ * }
+ * </pre>
+ * Relative paths are resolved from the manifest directory and the project options override the global ones.
+ * The global swaggerCache, swaggerMetricsReport and swaggerShards are resolved from the output directory of each
+ * project so the projects don't write the same files, an absolute swaggerMetricsReport or swaggerShards is only
+ * accepted in the project options (the cache entries are per project so a shared cache directory is fine).
+ *
+ * The analyzer registers the class paths in JVM wide class loaders, a class is read from the first project defining
+ * it so the projects of a JVM can't define the same class: such a project fails, it must be rendered by another JVM
+ * (the dependencies are not checked, they are usually the same libraries). Reanalyzing a class path is fine.
+ *
+ * It can be launched with the manifests as arguments or with --daemon to read manifest paths from the standard
+ * input, one per line, and print the result of each of them as a JSON line.
+ */
+public class EnrichedBatchRenderer implements AutoCloseable {
+
+    // the analyzer registers the classes in a JVM wide class loader so only the renders run concurrently
+    private static final Object ANALYSIS_LOCK = new Object();
+
+    // guarded by the analysis lock, the class path which registered each class
+    private static final Map<String, Path> ANALYZED_CLASSES = new HashMap<>();
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    // the backends of the least recently used options are dropped, a daemon gets many manifests
+    private static final int MAX_BACKENDS = 32;
+
+    // the files written by each render, given per render so the projects still share the backend
+    private static final Collection<String> PATH_OPTIONS = asList(SWAGGER_CACHE, SWAGGER_METRICS_REPORT, SWAGGER_SHARDS);
+
+    private final ExecutorService executor;
+
+    // guarded by itself, in access order
+    private final Map<Map<String, String>, EnrichedSwaggerBackend> backends =
+            new LinkedHashMap<Map<String, String>, EnrichedSwaggerBackend>(16, .75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Map<String, String>, EnrichedSwaggerBackend> eldest) {
+                    return size() > MAX_BACKENDS;
+                }
+            };
+
+    // for the manifests and the results, resolved once like in the backends
+    private final JsonBuilderFactory builders;
+
+    private final JsonReaderFactory readers;
+
+    public EnrichedBatchRenderer(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Please provide a positive parallelism");
+        }
+        final AtomicInteger threads = new AtomicInteger();
+        // bounded queue: when it is full the submitter renders itself, it avoids to analyze all the projects upfront
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0, MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 2), r -> {
+                    final Thread thread = new Thread(r, "swagger-batch-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        final JsonProvider provider = JsonProvider.provider();
+        this.builders = provider.createBuilderFactory(emptyMap());
+        this.readers = provider.createReaderFactory(emptyMap());
+    }
+
+    /**
+     * @param project the analyzed project.
+     * @param options the backend options.
+     * @param output the file to write.
+     * @return the render completing with the output.
+     */
+    public CompletableFuture<Path> submit(final Project project, final Map<String, String> options, final Path output) {
+        return CompletableFuture.supplyAsync(() -> {
+            render(project, options, output);
+            return output;
+        }, executor);
+    }
+
+    /**
+     * @param name the project name.
+     * @param version the project version.
+     * @param classPaths the compiled classes of the project.
+     * @param sourcePaths the sources of the project, used for the javadoc.
+     * @param dependencies the classpath of the project.
+     * @param options the backend options.
+     * @param output the file to write.
+     * @return the analysis and render completing with the output.
+     */
+    public CompletableFuture<Path> submit(final String name, final String version, final Set<Path> classPaths,
+            final Set<Path> sourcePaths, final Set<Path> dependencies, final Map<String, String> options,
+            final Path output) {
+        return CompletableFuture.supplyAsync(() -> {
+            final Resources resources;
+            synchronized (ANALYSIS_LOCK) {
+                registerClasses(name, classPaths);
+                resources = new ProjectAnalyzer(dependencies).analyze(classPaths, sourcePaths);
+            }
+            render(new Project(name, version, resources), options, output);
+            return output;
+        }, executor);
+    }
+
+    /**
+     * Renders all the projects of a manifest, a failing project does not stop the others.
+     *
+     * @param manifest the manifest file.
+     * @return the result of each project: name, output and durationMs or error.
+     */
+    public JsonArray render(final Path manifest) {
+        final JsonObject config;
+        try (final JsonReader reader = readers.createReader(Files.newBufferedReader(manifest, UTF_8))) {
+            config = reader.readObject();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not read " + manifest, e);
+        }
+        final Path base = manifest.toAbsolutePath().getParent();
+        final Map<String, String> globalOptions = toOptions(config.getJsonObject("options"));
+        for (final String key : asList(SWAGGER_METRICS_REPORT, SWAGGER_SHARDS)) {
+            if (globalOptions.containsKey(key) && Paths.get(globalOptions.get(key)).isAbsolute()) {
+                throw new IllegalArgumentException("The global " + key + " of " + manifest
+                        + " must be relative, it is resolved from the output directory of each project");
+            }
+        }
+
+        final List<String> names = new ArrayList<>();
+        final List<CompletableFuture<JsonObject>> results = new ArrayList<>();
+        for (final JsonObject project : config.getJsonArray("projects").getValuesAs(JsonObject.class)) {
+            final String name = project.getString("name");
+            final Path output = base.resolve(project.getString("output"));
+            final Map<String, String> options = toProjectOptions(globalOptions,
+                    toOptions(project.getJsonObject("options")), base, output);
+            final long start = System.nanoTime();
+            names.add(name);
+            results.add(submit(name, project.getString("version", null), toPaths(base, project, "classPaths"),
+                    toPaths(base, project, "sourcePaths"), toPaths(base, project, "dependencies"), options, output)
+                    .thenApply(file -> {
+                        LogProvider.info("Rendered " + name + " to " + file);
+                        return builders.createObjectBuilder()
+                                .add("name", name)
+                                .add("output", file.toString())
+                                .add("durationMs", NANOSECONDS.toMillis(System.nanoTime() - start))
+                                .build();
+                    }));
+        }
+
+        final JsonArrayBuilder summary = builders.createArrayBuilder();
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                summary.add(results.get(i).join());
+            } catch (final CompletionException e) {
+                final Throwable cause = e.getCause() == null ? e : e.getCause();
+                LogProvider.error("Could not render " + names.get(i) + ", reason: " + cause.getMessage());
+                LogProvider.debug(cause);
+                summary.add(builders.createObjectBuilder()
+                        .add("name", names.get(i))
+                        .add("error", String.valueOf(cause.getMessage())));
+            }
+        }
+        return summary.build();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    Collection<EnrichedSwaggerBackend> getBackends() {
+        synchronized (backends) {
+            return new ArrayList<>(backends.values());
+        }
+    }
+
+    private void render(final Project project, final Map<String, String> options, final Path output) {
+        final Map<String, String> config = new HashMap<>(options);
+        final Map<String, String> files = new HashMap<>();
+        PATH_OPTIONS.stream().filter(options::containsKey).forEach(key -> files.put(key, config.remove(key)));
+        getBackend(config).render(project, output, files);
+    }
+
+    private EnrichedSwaggerBackend getBackend(final Map<String, String> options) {
+        synchronized (backends) {
+            return backends.computeIfAbsent(options, config -> {
+                final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+                backend.configure(config);
+                return backend;
+            });
+        }
+    }
+
+    // fails if a class of the project was registered by another class path, the analysis would read the other one
+    static void registerClasses(final String project, final Set<Path> classPaths) {
+        final Map<String, Path> classes = new HashMap<>();
+        synchronized (ANALYSIS_LOCK) { // reentrant, the analysis holds it until the classes are analyzed
+            for (final Path classPath : classPaths) {
+                final Path root = classPath.toAbsolutePath().normalize();
+                for (final String className : listClasses(root)) {
+                    final Path previous = ANALYZED_CLASSES.getOrDefault(className, root);
+                    if (!previous.equals(root)) {
+                        throw new IllegalStateException("The class " + className + " of " + project + " (" + root
+                                + ") was already analyzed from " + previous + ", please render it in another JVM");
+                    }
+                    classes.put(className, root);
+                }
+            }
+            ANALYZED_CLASSES.putAll(classes);
+        }
+    }
+
+    private static Collection<String> listClasses(final Path classPath) {
+        try {
+            if (Files.isDirectory(classPath)) {
+                try (final Stream<Path> files = Files.walk(classPath)) {
+                    return files.filter(file -> file.getFileName().toString().endsWith(CLASS_EXTENSION))
+                            .map(file -> toClassName(
+                                    classPath.relativize(file).toString().replace(File.separatorChar, '/')))
+                            .filter(Objects::nonNull)
+                            .collect(toList());
+                }
+            }
+            if (Files.isRegularFile(classPath)) {
+                try (final JarFile jar = new JarFile(classPath.toFile())) {
+                    return jar.stream().map(entry -> toClassName(entry.getName())).filter(Objects::nonNull)
+                            .collect(toList());
+                }
+            }
+            return emptyList();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not list the classes of " + classPath, e);
+        }
+    }
+
+    // null for the files which are not classes of the project
+    private static String toClassName(final String file) {
+        if (!file.endsWith(CLASS_EXTENSION) || file.endsWith("module-info" + CLASS_EXTENSION)
+                || file.endsWith("package-info" + CLASS_EXTENSION) || file.startsWith("META-INF/")) {
+            return null;
+        }
+        return file.substring(0, file.length() - CLASS_EXTENSION.length()).replace('/', '.');
+    }
+
+    private static Map<String, String> toOptions(final JsonObject options) {
+        final Map<String, String> config = new HashMap<>();
+        if (options != null) {
+            options.forEach((key, value) -> config.put(key,
+                    value instanceof JsonString ? ((JsonString) value).getString() : value.toString()));
+        }
+        return config;
+    }
+
+    // the global files of a render are resolved from the project output directory, the project ones from the manifest
+    static Map<String, String> toProjectOptions(final Map<String, String> globalOptions,
+            final Map<String, String> projectOptions, final Path base, final Path output) {
+        final Map<String, String> options = resolvePaths(globalOptions, output.getParent());
+        options.putAll(resolvePaths(projectOptions, base));
+        return options;
+    }
+
+    private static Map<String, String> resolvePaths(final Map<String, String> options, final Path directory) {
+        final Map<String, String> resolved = new HashMap<>(options);
+        PATH_OPTIONS.stream().filter(options::containsKey)
+                .forEach(key -> resolved.put(key, directory.resolve(options.get(key)).toString()));
+        return resolved;
+    }
+
+    private static Set<Path> toPaths(final Path base, final JsonObject project, final String key) {
+        if (!project.containsKey(key)) {
+            return new HashSet<>();
+        }
+        return project.getJsonArray(key).getValuesAs(JsonString.class).stream()
+                .map(path -> base.resolve(path.getString()))
+                .collect(toSet());
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: EnrichedBatchRenderer [--parallelism N] (--daemon | manifest.json...)");
+            System.exit(1);
+        }
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        boolean daemon = false;
+        final List<Path> manifests = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--parallelism":
+                parallelism = Integer.parseInt(args[++i]);
+                break;
+            case "--daemon":
+                daemon = true;
+                break;
+            default:
+                manifests.add(Paths.get(args[i]));
+            }
+        }
+
+        // the standard output only gets the results, the analyzer (javadoc) logs go to the error output
+        final PrintStream results = System.out;
+        System.setOut(System.err);
+
+        boolean failed = false;
+        try (final EnrichedBatchRenderer renderer = new EnrichedBatchRenderer(parallelism)) {
+            if (daemon) { // keeps the JVM (JIT, backends) warm between the manifests
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        results.println(renderer.render(Paths.get(line.trim())));
+                    } catch (final RuntimeException e) { // an invalid manifest must not stop the daemon
+                        results.println(renderer.builders.createObjectBuilder()
+                                .add("error", String.valueOf(e.getMessage())).build());
+                    }
+                    results.flush();
+                }
+                return;
+            }
+            for (final Path manifest : manifests) {
+                final JsonArray result = renderer.render(manifest);
+                results.println(result);
+                failed |= result.getValuesAs(JsonObject.class).stream().anyMatch(r -> r.containsKey("error"));
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
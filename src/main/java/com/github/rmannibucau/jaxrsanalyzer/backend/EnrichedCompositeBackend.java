@@ -0,0 +1,151 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_JSON_PROVIDER;
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.loadJsonProvider;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.StreamSupport;
+
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObjectBuilder;
+import javax.json.spi.JsonProvider;
+
+import com.sebastian_daschner.jaxrs_analyzer.backend.Backend;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+/**
+ * Renders several backends from a single sort of the project model, each output is written to its own file
+ * concurrently. The returned content is a JSON object listing the written files.
+ *
+ * Configured with compositeOutputs=backend=file,... (for instance swagger=target/swagger.json,asciidoc=target/api.adoc),
+ * the other options are passed to all the backends.
+ */
+public class EnrichedCompositeBackend implements Backend {
+
+    public static final String COMPOSITE_OUTPUTS = "compositeOutputs";
+
+    private final Map<String, Output> outputs = new LinkedHashMap<>();
+
+    // the manifest is built with the JSON provider of the Swagger output
+    private JsonBuilderFactory builders = JsonProvider.provider().createBuilderFactory(emptyMap());
+
+    @Override
+    public String getName() {
+        return "Composite";
+    }
+
+    @Override
+    public void configure(final Map<String, String> config) {
+        if (config.containsKey(COMPOSITE_OUTPUTS)) {
+            outputs.clear();
+            for (final String output : config.get(COMPOSITE_OUTPUTS).split(",")) {
+                final int sep = output.indexOf('=');
+                if (sep <= 0) {
+                    System.err.println("Please provide backend=file entries for option --compositeOutputs\n");
+                    throw new IllegalArgumentException("Please provide backend=file entries for option --compositeOutputs");
+                }
+                final String name = output.substring(0, sep).trim();
+                outputs.put(name, new Output(findBackend(name), Paths.get(output.substring(sep + 1).trim())));
+            }
+        }
+        if (config.containsKey(SWAGGER_JSON_PROVIDER)) {
+            builders = loadJsonProvider(config.get(SWAGGER_JSON_PROVIDER)).createBuilderFactory(emptyMap());
+        }
+        outputs.values().forEach(o -> o.backend.configure(config));
+    }
+
+    @Override
+    public byte[] render(final Project project) {
+        if (outputs.isEmpty()) {
+            throw new IllegalStateException("No output configured, please set --" + COMPOSITE_OUTPUTS);
+        }
+
+        final SortedResources sortedResources = new SortedResources(project.getResources());
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(outputs.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            final List<Future<?>> tasks = outputs.values().stream()
+                    .map(o -> executor.submit(() -> o.render(project, sortedResources)))
+                    .collect(toList());
+            final JsonObjectBuilder manifest = builders.createObjectBuilder();
+            int index = 0;
+            for (final Map.Entry<String, Output> output : outputs.entrySet()) {
+                try {
+                    tasks.get(index++).get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    throw new IllegalStateException("Could not render " + output.getKey() + " output", e.getCause());
+                }
+                manifest.add(output.getKey(), output.getValue().path.toString());
+            }
+            return manifest.build().toString().getBytes(UTF_8);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Backend findBackend(final String name) {
+        switch (name.toLowerCase()) {
+        case "swagger":
+            return new EnrichedSwaggerBackend();
+        case "asciidoc":
+            return new EnrichedAsciidocBackend();
+        default: // any other registered backend, without model sharing
+            return StreamSupport.stream(ServiceLoader.load(Backend.class).spliterator(), false)
+                    .filter(b -> b.getName().equalsIgnoreCase(name) && !(b instanceof EnrichedCompositeBackend))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown backend " + name));
+        }
+    }
+
+    private static class Output {
+
+        private final Backend backend;
+
+        private final Path path;
+
+        private Output(final Backend backend, final Path path) {
+            this.backend = backend;
+            this.path = path;
+        }
+
+        private void render(final Project project, final SortedResources sortedResources) {
+            try {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                if (backend instanceof EnrichedAsciidocBackend) { // same encoding as AsciiDocBackend#render
+                    ((EnrichedAsciidocBackend) backend).render(project, sortedResources, path);
+                    return;
+                }
+                if (backend instanceof EnrichedSwaggerBackend) { // an unchanged output is left untouched
+                    ((EnrichedSwaggerBackend) backend).render(project, sortedResources, path, true);
+                    return;
+                }
+                try (final OutputStream stream = Files.newOutputStream(path)) {
+                    stream.write(backend.render(project));
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Could not write " + path, e);
+            }
+        }
+    }
+}
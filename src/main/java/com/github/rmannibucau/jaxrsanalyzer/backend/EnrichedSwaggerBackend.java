@@ -1,43 +1,82 @@
 package com.github.rmannibucau.jaxrsanalyzer.backend;
 
 import static com.sebastian_daschner.jaxrs_analyzer.backend.ComparatorUtils.mapKeyComparator;
-import static com.sebastian_daschner.jaxrs_analyzer.backend.ComparatorUtils.parameterComparator;
 import static com.sebastian_daschner.jaxrs_analyzer.model.Types.BOOLEAN;
 import static com.sebastian_daschner.jaxrs_analyzer.model.Types.DOUBLE_TYPES;
 import static com.sebastian_daschner.jaxrs_analyzer.model.Types.INTEGER_TYPES;
 import static com.sebastian_daschner.jaxrs_analyzer.model.Types.PRIMITIVE_BOOLEAN;
 import static com.sebastian_daschner.jaxrs_analyzer.model.Types.STRING;
-import static java.util.Collections.singleton;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
-import static java.util.Comparator.comparing;
 import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toMap;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.ServiceLoader;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import javax.json.Json;
-import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonPatch;
-import javax.json.JsonWriter;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParserFactory;
 import javax.ws.rs.core.Response;
 
+import com.github.rmannibucau.jaxrsanalyzer.backend.SwaggerRenderMetrics.Phase;
+import com.github.rmannibucau.jaxrsanalyzer.backend.SortedResources.SortedMethod;
+import com.github.rmannibucau.jaxrsanalyzer.backend.SortedResources.SortedResponse;
 import com.sebastian_daschner.jaxrs_analyzer.LogProvider;
 import com.sebastian_daschner.jaxrs_analyzer.backend.Backend;
 import com.sebastian_daschner.jaxrs_analyzer.model.rest.MethodParameter;
@@ -57,21 +96,45 @@ public class EnrichedSwaggerBackend implements Backend {
     private static final String SWAGGER_VERSION = "2.0";
     private static final String MODEL_SECTION = "Model";
 
-    private final Lock lock = new ReentrantLock();
+    // the model section goes last
+    private static final Comparator<String> SECTION_ORDER = (o1, o2) -> {
+        if (MODEL_SECTION.equals(o1)) {
+            return MODEL_SECTION.equals(o2) ? 0 : 1;
+        }
+        if (MODEL_SECTION.equals(o2)) {
+            return -1;
+        }
+        return o1.compareTo(o2);
+    };
 
-    private final SwaggerOptions options = new SwaggerOptions();
+    // shared immutable fragments, they are the same for the whole document
+    private static final JsonObject MODEL_SECTION_EXTENSION = Json.createObjectBuilder().add("section", MODEL_SECTION).build();
 
-    private Resources resources;
+    private static final JsonObject BINARY_ITEMS = Json.createObjectBuilder()
+            .add("type", "string").add("format", "binary").build();
 
-    private JsonObjectBuilder builder;
+    // the order of the parameters in an operation
+    private static final ParameterType[] PARAMETER_TYPES = {
+            ParameterType.PATH, ParameterType.HEADER, ParameterType.QUERY, ParameterType.FORM
+    };
 
-    private SchemaBuilder schemaBuilder;
+    // same as Response.Status.fromStatusCode() without scanning all the statuses for each response
+    private static final Map<Integer, String> STATUS_DESCRIPTIONS = Stream.of(Response.Status.values())
+            .collect(toMap(Response.Status::getStatusCode, Response.Status::getReasonPhrase, (first, second) -> first));
 
-    private String projectName;
+    // the unchanged output check compares the files by blocks
+    private static final int COMPARISON_BLOCK = 8192;
 
-    private String projectVersion;
+    // enough to hold the x-fingerprint member and the end of the document in all the output formats
+    private static final int FINGERPRINT_TAIL = 256;
 
-    private final Collection<String> sections = new HashSet<>(singleton(MODEL_SECTION));
+    private final SwaggerOptions options = new SwaggerOptions();
+
+    private final Collection<SwaggerRenderListener> listeners = new CopyOnWriteArrayList<>();
+
+    public EnrichedSwaggerBackend() {
+        ServiceLoader.load(SwaggerRenderListener.class).forEach(listeners::add);
+    }
 
     @Override
     public String getName() {
@@ -83,194 +146,760 @@ public class EnrichedSwaggerBackend implements Backend {
         options.configure(config);
     }
 
+    SwaggerOptions getOptions() {
+        return options;
+    }
+
+    public void addRenderListener(final SwaggerRenderListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeRenderListener(final SwaggerRenderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Renders the project in memory, use {@link #render(Project, Path)} to leave an unchanged output untouched.
+     *
+     * @param project the project to render.
+     * @return the rendered document.
+     */
     @Override
     public byte[] render(final Project project) {
-        lock.lock();
-        try {
-            // initialize fields
-            builder = Json.createObjectBuilder();
-            resources = project.getResources();
-            projectName = project.getName();
-            projectVersion = project.getVersion();
-            schemaBuilder = new SchemaBuilder(resources.getTypeRepresentations());
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        render(project, Channels.newChannel(output));
+        return output.toByteArray();
+    }
+
+    /**
+     * Renders the project without keeping the whole output in memory. The channel is always written, use
+     * {@link #render(Project, Path)} to leave an unchanged output untouched.
+     *
+     * @param project the project to render.
+     * @param channel the output, it is not closed.
+     */
+    public void render(final Project project, final WritableByteChannel channel) {
+        render(project, new SortedResources(project.getResources()), channel);
+    }
+
+    /**
+     * Same as {@link #render(Project, Path, boolean)} with an atomic write.
+     *
+     * @param project the project to render.
+     * @param target the file to write.
+     */
+    public void render(final Project project, final Path target) {
+        render(project, target, true);
+    }
+
+    /**
+     * Renders the project in a file without keeping the whole output in memory.
+     *
+     * @param project the project to render.
+     * @param target the file to write.
+     * @param atomic if true the output is written in a temporary file moved to the target once complete so readers
+     *               never see a partial file, if the target already has the same content it is left untouched
+     *               (its timestamp does not change).
+     */
+    public void render(final Project project, final Path target, final boolean atomic) {
+        render(project, new SortedResources(project.getResources()), target, atomic);
+    }
 
-            final JsonObject output = modifyJson(renderInternal());
+    // used by the composite backend, like the channel flavor, to get the atomic write and the unchanged output skip
+    void render(final Project project, final SortedResources sortedResources, final Path target, final boolean atomic) {
+        render(project, sortedResources, target, atomic, emptyMap());
+    }
+
+    /**
+     * Used by the batch renderer so the projects sharing the options share the backend.
+     *
+     * @param project the project to render.
+     * @param target the file to write atomically.
+     * @param files the swaggerCache, swaggerMetricsReport and swaggerShards of this render, the configured ones are
+     *              used for the missing keys.
+     */
+    void render(final Project project, final Path target, final Map<String, String> files) {
+        render(project, new SortedResources(project.getResources()), target, true, files);
+    }
+
+    private void render(final Project project, final SortedResources sortedResources, final Path target,
+            final boolean atomic, final Map<String, String> files) {
+        final Path parent = target.toAbsolutePath().getParent();
+        final Path shards = options.getShards(files);
+        // the shards of a previous render are deleted, the output must not be one of them
+        if (shards != null && parent.normalize().startsWith(shards.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("The Swagger output " + target + " can't be in the swaggerShards directory "
+                    + shards + ", please use another directory");
+        }
+        try {
+            Files.createDirectories(parent);
+            if (!atomic) {
+                try (final FileChannel channel = FileChannel.open(target, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                    render(project, sortedResources, channel, files);
+                }
+                return;
+            }
 
-            return serialize(output);
-        } finally {
-            sections.clear();
-            lock.unlock();
+            final Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+            try {
+                final String fingerprint;
+                try (final FileChannel channel = FileChannel.open(temp, WRITE, TRUNCATE_EXISTING)) {
+                    fingerprint = render(project, sortedResources, channel, files);
+                }
+                if (hasSameContent(temp, target, fingerprint)) { // don't trigger the tasks watching the output
+                    return;
+                }
+                try {
+                    Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write Swagger output to " + target, e);
         }
     }
 
-    private JsonObject modifyJson(final JsonObject json) {
-        if (options.getJsonPatch() == null)
-            return json;
-        return options.getJsonPatch().apply(json);
+    // the fingerprint hashes all the bytes before it and ends the document, if the tails holding it are the same
+    // the documents are the same (the target is trusted to be a previous output) so the rest is not read
+    private static boolean hasSameContent(final Path file, final Path other, final String fingerprint) throws IOException {
+        if (!Files.exists(other) || Files.size(file) != Files.size(other)) {
+            return false;
+        }
+        final long size = Files.size(file);
+        try (final FileChannel first = FileChannel.open(file, READ);
+             final FileChannel second = FileChannel.open(other, READ)) {
+            final ByteBuffer firstBuffer = ByteBuffer.allocate(COMPARISON_BLOCK);
+            final ByteBuffer secondBuffer = ByteBuffer.allocate(COMPARISON_BLOCK);
+            for (long position = fingerprint == null ? 0 : Math.max(0, size - FINGERPRINT_TAIL); position < size;
+                    position += COMPARISON_BLOCK) {
+                if (!readBlock(first, position, firstBuffer).equals(readBlock(second, position, secondBuffer))) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
-    private JsonObject renderInternal() {
-        appendHeader();
-        appendPaths();
-        appendDefinitions();
-
-        if (!sections.isEmpty()) {
-            final JsonArrayBuilder xRestletSections = sections.stream()
-                                  .sorted((o1, o2) -> {
-                                      if (MODEL_SECTION.equals(o1)) {
-                                          return 1;
-                                      }
-                                      if (MODEL_SECTION.equals(o2)) {
-                                          return -1;
-                                      }
-                                      return o1.compareTo(o2);
-                                  })
-                                .collect(Json::createArrayBuilder, JsonArrayBuilder::add, JsonArrayBuilder::addAll);
-            builder.add("x-restlet",
-                    Json.createObjectBuilder()
-                        .add("sections", xRestletSections)
-                            .build());
-        }
-
-        return builder.build();
+    private static ByteBuffer readBlock(final FileChannel channel, final long position, final ByteBuffer buffer)
+            throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // fill the block, a read can return less bytes
+        }
+        buffer.flip();
+        return buffer;
     }
 
-    private void appendHeader() {
-        builder.add("swagger", SWAGGER_VERSION)
-                .add("info", Json.createObjectBuilder().add("version", projectVersion).add("title", projectName))
-                .add("host", options.getDomain() == null ? "" : options.getDomain())
-                .add("basePath", '/' + (resources.getBasePath() != null ? resources.getBasePath() : ""))
-                .add("schemes", options.getSchemes().stream().map(Enum::name).map(String::toLowerCase).sorted()
-                        .collect(Json::createArrayBuilder, JsonArrayBuilder::add, JsonArrayBuilder::add).build());
-        if (options.isRenderTags()) {
-            final JsonArrayBuilder tags = Json.createArrayBuilder();
-            resources.getResources().stream().map(this::extractTag).filter(Objects::nonNull).distinct().sorted()
-                    .map(tag -> Json.createObjectBuilder().add("name", tag)).forEach(tags::add);
-            builder.add("tags", tags);
+    /**
+     * Prepares a document of the project rendered on demand, path per path and definition per definition.
+     *
+     * @param project the analyzed project.
+     * @param maxCacheSize the maximum size in bytes of the rendered fragments kept in memory.
+     * @return the lazy document.
+     */
+    public SwaggerLazyDocument openLazyDocument(final Project project, final long maxCacheSize) {
+        if (maxCacheSize < 0) {
+            throw new IllegalArgumentException("Please provide a positive cache size");
+        }
+        final SwaggerPatch patch = options.getJsonPatch();
+        if (patch != null && !patch.isStreamable()) {
+            throw new IllegalStateException(
+                    "The jsonPatch spans several entries or moves one, it can't be applied to fragments");
         }
+        final Renderer renderer = new Renderer(project, new SortedResources(project.getResources()), emptyMap());
+        renderer.assignDefinitionNames();
+        return new SwaggerLazyDocument(renderer, maxCacheSize);
     }
 
-    private String extractTag(final String s) {
-        final int offset = options.getTagsPathOffset();
-        final String[] parts = s.split("/");
+    // used by the composite backend to share the sorted model with the other backends
+    void render(final Project project, final SortedResources sortedResources, final WritableByteChannel channel) {
+        render(project, sortedResources, channel, emptyMap());
+    }
 
-        if (parts.length > offset && !parts[offset].contains("{")) {
-            return parts[offset];
+    // returns the fingerprint of the output, null if it has none
+    private String render(final Project project, final SortedResources sortedResources, final WritableByteChannel channel,
+            final Map<String, String> files) {
+        final Renderer renderer = new Renderer(project, sortedResources, files);
+        final long start = System.nanoTime();
+        final ChannelOutputStream output = new ChannelOutputStream(channel);
+        try {
+            try {
+                renderer.render(output);
+            } finally {
+                output.close(); // releases the buffer if the render failed, else flushes the last bytes before the metrics
+            }
+            renderer.metrics.onOutput(output.getWritten(), renderer.outputCached, System.nanoTime() - start);
+            renderer.metrics.onFingerprint(renderer.fingerprint);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write Swagger output", e);
         }
-        return null;
+        // the metrics are the ones of this render, the listeners of concurrent renders get their own
+        fireRender(renderer.metrics, renderer.metricsReport);
+        return renderer.fingerprint;
     }
 
-    private void appendPaths() {
-        final JsonObjectBuilder paths = Json.createObjectBuilder();
-        resources.getResources().stream().sorted().forEach(s -> {
-            final JsonObjectBuilder endpoint = buildPathDefinition(s);
-            int slash = s.indexOf('/');
-            if (slash < 0) {
-                slash = s.length();
+    private void fireRender(final SwaggerRenderMetrics metrics, final SwaggerMetricsReport report) {
+        if (report != null) {
+            report.onRender(metrics);
+        }
+        listeners.forEach(listener -> {
+            try {
+                listener.onRender(metrics);
+            } catch (final RuntimeException e) { // metrics must not break the build
+                LogProvider.error("Swagger render listener " + listener + " failed, reason: " + e.getMessage());
+                LogProvider.debug(e);
             }
-            final String section = Character.toUpperCase(s.charAt(0)) + s.substring(1, slash).replaceFirst("type", " Type");
-            endpoint.add("x-restlet", Json.createObjectBuilder().add("section", section));
-            sections.add(section);
-            paths.add('/' + s, endpoint);
         });
-        builder.add("paths", paths);
     }
 
-    private JsonObjectBuilder buildPathDefinition(final String s) {
-        final JsonObjectBuilder methods = Json.createObjectBuilder();
-        resources.getMethods(s).stream().sorted(comparing(ResourceMethod::getMethod))
-                .forEach(m -> methods.add(m.getMethod().toString().toLowerCase(ROOT), buildForMethod(m, s)));
-        return methods;
+    private static String toSection(final String s) {
+        int slash = s.indexOf('/');
+        if (slash < 0) {
+            slash = s.length();
+        }
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1, slash).replaceFirst("type", " Type");
     }
 
-    private JsonObjectBuilder buildForMethod(final ResourceMethod method, final String s) {
-        final JsonArrayBuilder consumes = Json.createArrayBuilder();
-        method.getRequestMediaTypes().stream().sorted().forEach(consumes::add);
+    // holds the state of a render, it is what allows to render concurrently with the same backend instance
+    private class Renderer implements SwaggerLazyDocument.Source {
 
-        final JsonArrayBuilder produces = Json.createArrayBuilder();
-        method.getResponseMediaTypes().stream().sorted().forEach(produces::add);
+        private final Project project;
 
-        final JsonObjectBuilder builder = Json.createObjectBuilder();
+        private final Resources resources;
 
-        if (method.getDescription() != null)
-            builder.add("description", method.getDescription() + (method.isDeprecated() ? "\n\nWARNING: this endpoint is deprecated" : ""));
+        private final SortedResources sortedResources;
 
-        builder.add("consumes", consumes).add("produces", produces).add("parameters", buildParameters(method)).add("responses",
-                buildResponses(method));
+        private final String projectName;
 
-        if (method.isDeprecated())
-            builder.add("deprecated", true);
+        private final String projectVersion;
 
-        if (options.isRenderTags())
-            Optional.ofNullable(extractTag(s)).ifPresent(t -> builder.add("tags", Json.createArrayBuilder().add(t)));
+        private final SchemaBuilder schemaBuilder;
 
-        return builder;
-    }
+        private final SwaggerRenderCache renderCache;
+
+        private final Path shards;
+
+        private final SwaggerMetricsReport metricsReport;
+
+        private final SwaggerPatch jsonPatch;
 
-    private JsonArrayBuilder buildParameters(final ResourceMethod method) {
-        final Set<MethodParameter> parameters = method.getMethodParameters();
-        final JsonArrayBuilder parameterBuilder = Json.createArrayBuilder();
+        // the patches applied while streaming, null/empty if there is no patch or if it needs the whole tree
+        private final JsonPatch headerPatch;
 
-        buildParameters(parameters, ParameterType.PATH, parameterBuilder);
-        buildParameters(parameters, ParameterType.HEADER, parameterBuilder);
-        buildParameters(parameters, ParameterType.QUERY, parameterBuilder);
-        buildParameters(parameters, ParameterType.FORM, parameterBuilder);
+        private final Map<String, JsonPatch> pathPatches;
 
-        if (method.getRequestBody() != null) {
-            final JsonObjectBuilder requestBuilder = Json.createObjectBuilder().add("name", "body").add("in", "body")
-                    .add("required", true).add("schema", schemaBuilder.build(method.getRequestBody()));
-            if (!StringUtils.isBlank(method.getRequestBodyDescription()))
-                requestBuilder.add("description", method.getRequestBodyDescription());
-            parameterBuilder.add(requestBuilder);
+        private final Map<String, JsonPatch> definitionPatches;
+
+        private final Collection<String> sections = ConcurrentHashMap.newKeySet();
+
+        private final SwaggerRenderMetrics metrics;
+
+        private boolean outputCached;
+
+        // computed while writing the document when enabled
+        private String fingerprint;
+
+        private Renderer(final Project project, final SortedResources sortedResources, final Map<String, String> files) {
+            this.project = project;
+            this.resources = project.getResources();
+            this.sortedResources = sortedResources;
+            this.projectName = project.getName();
+            this.projectVersion = project.getVersion();
+            this.schemaBuilder = new SchemaBuilder(resources.getTypeRepresentations(), options.getMaxDepth(),
+                    options.getBuilderFactory());
+            this.shards = options.getShards(files);
+            this.metricsReport = options.getMetricsReport(files);
+            // shards are written aside the output so they can't be restored from the cache
+            final Path cache = options.getCache(files);
+            this.renderCache = cache == null || shards != null ? null
+                    : new SwaggerRenderCache(cache, options.signature(), options.getBuilderFactory(),
+                            options.getReaderFactory(), options.getMinifiedGeneratorFactory());
+            this.jsonPatch = options.getJsonPatch();
+            final boolean streamedPatch = jsonPatch != null && jsonPatch.isStreamable();
+            this.headerPatch = streamedPatch ? jsonPatch.getHeaderPatch() : null;
+            this.pathPatches = streamedPatch ? jsonPatch.getPathPatches() : emptyMap();
+            this.definitionPatches = streamedPatch ? jsonPatch.getDefinitionPatches() : emptyMap();
+            this.sections.add(MODEL_SECTION);
+            this.metrics = new SwaggerRenderMetrics(projectName, projectVersion, options.getBuilderFactory());
+        }
+
+        // the output is closed
+        private void render(final OutputStream output) throws IOException {
+            if (renderCache == null) {
+                renderOutput(output);
+            } else {
+                try (final InputStream previous = renderCache.findOutput(project, sortedResources)) {
+                    if (previous != null) {
+                        outputCached = true;
+                        fingerprint = renderCache.getFingerprint();
+                        try (final OutputStream out = output) {
+                            final byte[] buffer = new byte[8192];
+                            int read;
+                            while ((read = previous.read(buffer)) >= 0) {
+                                out.write(buffer, 0, read);
+                            }
+                        }
+                        return;
+                    }
+                }
+                try {
+                    renderOutput(renderCache.capture(output));
+                    renderCache.store(fingerprint);
+                } finally {
+                    renderCache.release();
+                }
+            }
+            metrics.onSchemas(schemaBuilder.getCacheMisses(), schemaBuilder.getCacheHits());
+        }
+
+        private void renderOutput(final OutputStream output) {
+            if (shards != null) {
+                renderShards(output);
+                return;
+            }
+            if ((jsonPatch == null || jsonPatch.isStreamable()) && !options.isCompactDefinitions()) {
+                // no need of the tree, stream it directly
+                metrics.time(Phase.SERIALIZATION, () -> writeDocument(output, this::appendMembers));
+                return;
+            }
+
+            final JsonObject tree = metrics.time(Phase.PATCH, () -> postProcess(renderTree()));
+
+            metrics.time(Phase.SERIALIZATION, () -> writeDocument(output, generator -> tree.forEach(generator::write)));
+        }
+
+        // the fingerprint is the hash of the bytes written before it so it does not need another pass on the output,
+        // these bytes are the ones of the output format so each format has its own fingerprint
+        private void writeDocument(final OutputStream output, final Consumer<JsonGenerator> members) {
+            final MessageDigest digest = options.isFingerprint() ? newDigest() : null;
+            serialize(digest == null ? output : new DigestOutputStream(output, digest), generator -> {
+                generator.writeStartObject();
+                members.accept(generator);
+                if (digest != null) {
+                    generator.flush();
+                    fingerprint = toFingerprint(digest.digest());
+                    generator.write("x-fingerprint", fingerprint);
+                }
+                generator.writeEnd();
+            });
+        }
+
+        // the shards need the whole document to know which definitions they reference, the output is the manifest
+        private void renderShards(final OutputStream output) {
+            final JsonObject document = metrics.time(Phase.PATCH, () -> postProcess(renderTree()));
+            final SwaggerShardWriter writer = new SwaggerShardWriter(shards,
+                    options.getOutputFormat() == SwaggerOutputFormat.CBOR ? ".cbor" : ".json",
+                    EnrichedSwaggerBackend.this::createGenerator, options.getGeneratorFactory(), options.getBuilderFactory(),
+                    options.getReaderFactory(), SECTION_ORDER, MODEL_SECTION);
+            metrics.time(Phase.SERIALIZATION, () -> {
+                final JsonObject manifest = writer.write(document, this::toShard, options.getParallelism());
+                try (final JsonGenerator generator = options.getGeneratorFactory().createGenerator(output)) {
+                    generator.write(manifest);
+                }
+            });
+        }
+
+        private String toShard(final String path, final JsonObject value) {
+            if (options.getShardKey() == SwaggerShardKey.TAG) {
+                final String tag = extractTag(path.substring(1));
+                return tag == null ? "default" : tag;
+            }
+            final JsonObject extension = value.getJsonObject("x-restlet");
+            return extension == null ? "default" : extension.getString("section", "default");
+        }
+
+        // each fragment of the lazy document has its own schema builder using the names of this renderer so only
+        // the names are kept between the fragments, the render cache is not used
+
+        @Override
+        public Collection<String> getPaths() {
+            final Set<String> paths = new LinkedHashSet<>();
+            sortedResources.getPaths().forEach(s -> paths.add('/' + s));
+            paths.addAll(pathPatches.keySet()); // added by the patch
+            return paths;
+        }
+
+        @Override
+        public JsonValue renderPathFragment(final String path) {
+            final String s = path.startsWith("/") ? path.substring(1) : path;
+            final boolean exists = Collections.binarySearch(sortedResources.getPaths(), s) >= 0;
+            return patchEntry(pathPatches, '/' + s,
+                    exists ? renderPath(s, schemaBuilder.newFragmentBuilder()::buildReference) : null);
+        }
+
+        @Override
+        public JsonValue renderDefinitionFragment(final String name) {
+            return patchEntry(definitionPatches, name, schemaBuilder.newFragmentBuilder().resolveDefinition(name));
+        }
+
+        // names the definitions in the order of the whole document so a fragment does not depend on the previous ones
+        private void assignDefinitionNames() {
+            sortedResources.getPaths().forEach(s -> resolveSchemas(s, schemaBuilder::assignNames));
+        }
+
+        @Override
+        public byte[] toBytes(final JsonValue value) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            serialize(output, generator -> generator.write(value));
+            return output.toByteArray();
+        }
+
+        @Override
+        public void renderDocument(final OutputStream output) {
+            try {
+                renderOutput(output);
+            } finally {
+                schemaBuilder.clear(); // the document is not cached, its definitions neither
+            }
+        }
+
+        private JsonValue patchEntry(final Map<String, JsonPatch> patches, final String key, final JsonObject value) {
+            final JsonPatch patch = patches.get(key);
+            return patch == null ? value : jsonPatch.applyToEntry(patch, key, value).get(key);
+        }
+
+        // definitions are compacted after the patch since it can remove the paths referencing some of them
+        private JsonObject postProcess(final JsonObject json) {
+            final JsonObject patched = modifyJson(json);
+            if (!options.isCompactDefinitions()) {
+                return patched;
+            }
+            // by default only the definitions of same named types (Foo, Foo_2) are merged, not unrelated types
+            // which happen to have the same properties
+            final Function<String, String> classifier = options.isCompactAcrossNames() ? name -> ""
+                    : schemaBuilder::getSimpleName;
+            return new SwaggerDefinitionCompactor(options.getBuilderFactory(), classifier).compact(patched);
+        }
+
+        private JsonObject modifyJson(final JsonObject json) {
+            if (jsonPatch == null || jsonPatch.isStreamable()) // a streamable patch is already applied by renderInternal
+                return json;
+            return jsonPatch.apply(json);
+        }
+
+        // only used when the output needs the whole document since JSON-P can't patch a stream
+        private JsonObject renderTree() {
+            return toJson(this::renderInternal);
+        }
+
+        // the same rendering code builds the tree directly, no need to serialize it and parse it back
+        private JsonObject toJson(final Consumer<JsonGenerator> writer) {
+            final JsonTreeGenerator generator = new JsonTreeGenerator(options.getBuilderFactory());
+            writer.accept(generator);
+            generator.close();
+            metrics.onBuffer(generator.getSize());
+            return generator.getValue().asJsonObject();
+        }
+
+        private void renderInternal(final JsonGenerator generator) {
+            generator.writeStartObject();
+            appendMembers(generator);
+            generator.writeEnd();
+        }
+
+        private void appendMembers(final JsonGenerator generator) {
+            metrics.time(Phase.HEADER, () -> appendHeader(generator));
+            metrics.time(Phase.PATHS, () -> appendPaths(generator));
+            metrics.time(Phase.DEFINITIONS, () -> appendDefinitions(generator));
+
+            if (!sections.isEmpty()) {
+                generator.writeStartObject("x-restlet").writeStartArray("sections");
+                sections.stream().sorted(SECTION_ORDER).forEach(generator::write);
+                generator.writeEnd().writeEnd();
+            }
+        }
+
+        private void appendHeader(final JsonGenerator generator) {
+            if (headerPatch == null) {
+                writeHeader(generator);
+                return;
+            }
+            final JsonObject header = toJson(g -> {
+                g.writeStartObject();
+                writeHeader(g);
+                g.writeEnd();
+            });
+            headerPatch.apply(header).forEach(generator::write);
+        }
+
+        private void writeHeader(final JsonGenerator generator) {
+            generator.write("swagger", SWAGGER_VERSION)
+                    .writeStartObject("info").write("version", projectVersion).write("title", projectName).writeEnd()
+                    .write("host", options.getDomain() == null ? "" : options.getDomain())
+                    .write("basePath", '/' + (resources.getBasePath() != null ? resources.getBasePath() : ""))
+                    .writeStartArray("schemes");
+            options.getSchemes().stream().map(Enum::name).map(String::toLowerCase).sorted().forEach(generator::write);
+            generator.writeEnd();
+            if (options.isRenderTags()) {
+                generator.writeStartArray("tags");
+                sortedResources.getPaths().stream().map(this::extractTag).filter(Objects::nonNull).distinct().sorted()
+                        .forEach(tag -> generator.writeStartObject().write("name", tag).writeEnd());
+                generator.writeEnd();
+            }
+        }
+
+        private String extractTag(final String s) {
+            final int offset = options.getTagsPathOffset();
+            final String[] parts = s.split("/");
+
+            if (parts.length > offset && !parts[offset].contains("{")) {
+                return parts[offset];
+            }
+            return null;
+        }
+
+        private void appendPaths(final JsonGenerator generator) {
+            generator.writeStartObject("paths");
+            final Set<String> patched = new HashSet<>();
+            final Stream<String> paths = sortedResources.getPaths().stream();
+            final int parallelism = options.getParallelism();
+            if (parallelism > 1) {
+                // the definitions are named in the order types are met so it must be the sequential one
+                sortedResources.getPaths().forEach(s -> resolveSchemas(s, schemaBuilder::build));
+                final ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    // paths are merged back in order as soon as they are available, only a few are pending
+                    // so the memory does not depend on the number of paths
+                    final Deque<ForkJoinTask<Pair<String, JsonObject>>> pending = new ArrayDeque<>();
+                    paths.forEach(s -> {
+                        pending.add(pool.submit(() -> renderPath(s)));
+                        if (pending.size() > parallelism * 2) {
+                            writeEntry(generator, patched, pending.poll().join());
+                        }
+                    });
+                    while (!pending.isEmpty()) {
+                        writeEntry(generator, patched, pending.poll().join());
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
+            } else if (renderCache != null) {
+                paths.forEach(s -> writeEntry(generator, patched, renderPath(s)));
+            } else {
+                paths.forEach(s -> {
+                    if (pathPatches.containsKey('/' + s)) {
+                        writeEntry(generator, pathPatches, patched, '/' + s, renderPath(s, schemaBuilder::build));
+                        return;
+                    }
+                    generator.writeStartObject('/' + s);
+                    appendPath(generator, schemaBuilder::build, s);
+                    generator.writeEnd();
+                });
+            }
+            writeAddedEntries(generator, pathPatches, patched);
+            generator.writeEnd();
+        }
+
+        private void writeEntry(final JsonGenerator generator, final Set<String> patched,
+                final Pair<String, JsonObject> path) {
+            writeEntry(generator, pathPatches, patched, path.getLeft(), path.getRight());
+        }
+
+        // applies the operations of this entry if any, the entry is not written if the patch removed it
+        private void writeEntry(final JsonGenerator generator, final Map<String, JsonPatch> patches,
+                final Set<String> patched, final String key, final JsonObject value) {
+            final JsonPatch patch = patches.get(key);
+            if (patch == null) {
+                generator.write(key, value);
+                return;
+            }
+            patched.add(key);
+            jsonPatch.applyToEntry(patch, key, value).forEach(generator::write);
+        }
+
+        // operations on entries which were not rendered, like in tree mode they fail if they expect the entry
+        private void writeAddedEntries(final JsonGenerator generator, final Map<String, JsonPatch> patches,
+                final Set<String> patched) {
+            patches.entrySet().stream().filter(e -> !patched.contains(e.getKey()))
+                    .forEach(e -> jsonPatch.applyToEntry(e.getValue(), e.getKey(), null).forEach(generator::write));
+        }
+
+        // visits the types of a path in the order buildForMethod uses them, once built rendering it only reuses them
+        private void resolveSchemas(final String s, final Consumer<TypeIdentifier> schemas) {
+            for (final SortedMethod sortedMethod : sortedResources.getSortedMethods(s)) {
+                for (final SortedMethod shadowed : sortedMethod.getShadowed()) {
+                    resolveSchemas(shadowed, schemas);
+                }
+                resolveSchemas(sortedMethod, schemas);
+            }
+        }
+
+        private void resolveSchemas(final SortedMethod sortedMethod, final Consumer<TypeIdentifier> schemas) {
+            for (final ParameterType parameterType : PARAMETER_TYPES) {
+                for (final MethodParameter parameter : sortedMethod.getParameters(parameterType)) {
+                    schemas.accept(parameter.getType());
+                }
+            }
+            if (sortedMethod.getMethod().getRequestBody() != null) {
+                schemas.accept(sortedMethod.getMethod().getRequestBody());
+            }
+            for (final SortedResponse response : sortedMethod.getResponses()) {
+                if (response.getResponseBody() != null) {
+                    schemas.accept(response.getResponseBody());
+                }
+            }
+        }
+
+        // renders a path in isolation, used by parallel and incremental rendering to merge the fragments in order
+        private Pair<String, JsonObject> renderPath(final String s) {
+            if (renderCache == null) {
+                return Pair.of('/' + s, renderPath(s, schemaBuilder::build));
+            }
+
+            final JsonObject cached = renderCache.findPath(s, sortedResources.getMethods(s), schemaBuilder::build);
+            if (cached != null) {
+                metrics.onPathCacheHit();
+                sections.add(toSection(s));
+                return Pair.of('/' + s, cached);
+            }
+
+            final Map<TypeIdentifier, JsonObject> usedSchemas = new LinkedHashMap<>();
+            final JsonObject path = renderPath(s, type -> usedSchemas.computeIfAbsent(type, schemaBuilder::build));
+            renderCache.putPath(s, path, usedSchemas);
+            return Pair.of('/' + s, path);
+        }
+
+        private JsonObject renderPath(final String s, final Function<TypeIdentifier, JsonObject> schemas) {
+            return toJson(generator -> {
+                generator.writeStartObject();
+                appendPath(generator, schemas, s);
+                generator.writeEnd();
+            });
         }
-        return parameterBuilder;
-    }
 
-    private void buildParameters(final Set<MethodParameter> parameters, final ParameterType parameterType,
-            final JsonArrayBuilder builder) {
-        parameters.stream().filter(p -> p.getParameterType() == parameterType).sorted(parameterComparator()).forEach(e -> {
+        private void appendPath(final JsonGenerator generator, final Function<TypeIdentifier, JsonObject> schemas,
+                final String s) {
+            buildPathDefinition(generator, schemas, s);
+            metrics.onPathRendered();
+            final String section = toSection(s);
+            generator.writeStartObject("x-restlet").write("section", section).writeEnd();
+            sections.add(section);
+        }
+
+        private void buildPathDefinition(final JsonGenerator generator, final Function<TypeIdentifier, JsonObject> schemas,
+                final String s) {
+            for (final SortedMethod method : sortedResources.getSortedMethods(s)) {
+                // not rendered but their types still get a definition
+                for (final SortedMethod shadowed : method.getShadowed()) {
+                    resolveSchemas(shadowed, schemas::apply);
+                }
+                buildForMethod(generator, schemas, method, s);
+            }
+        }
+
+        private void buildForMethod(final JsonGenerator generator, final Function<TypeIdentifier, JsonObject> schemas,
+                final SortedMethod sortedMethod, final String s) {
+            final ResourceMethod method = sortedMethod.getMethod();
+            generator.writeStartObject(method.getMethod().toString().toLowerCase(ROOT));
+
+            if (method.getDescription() != null)
+                generator.write("description", method.getDescription() + (method.isDeprecated() ? "\n\nWARNING: this endpoint is deprecated" : ""));
+
+            generator.writeStartArray("consumes");
+            for (final String mediaType : sortedMethod.getRequestMediaTypes()) {
+                generator.write(mediaType);
+            }
+            generator.writeEnd();
+
+            generator.writeStartArray("produces");
+            for (final String mediaType : sortedMethod.getResponseMediaTypes()) {
+                generator.write(mediaType);
+            }
+            generator.writeEnd();
+
+            buildParameters(generator, schemas, sortedMethod);
+            buildResponses(generator, schemas, sortedMethod);
+
+            if (method.isDeprecated())
+                generator.write("deprecated", true);
+
+            if (options.isRenderTags())
+                Optional.ofNullable(extractTag(s)).ifPresent(t -> generator.writeStartArray("tags").write(t).writeEnd());
+
+            generator.writeEnd();
+        }
+
+        private void buildParameters(final JsonGenerator generator, final Function<TypeIdentifier, JsonObject> schemas,
+                final SortedMethod sortedMethod) {
+            final ResourceMethod method = sortedMethod.getMethod();
+            generator.writeStartArray("parameters");
+
+            for (final ParameterType parameterType : PARAMETER_TYPES) {
+                buildParameters(generator, schemas, sortedMethod, parameterType);
+            }
+
+            if (method.getRequestBody() != null) {
+                generator.writeStartObject().write("name", "body").write("in", "body")
+                        .write("required", true).write("schema", schemas.apply(method.getRequestBody()));
+                if (!StringUtils.isBlank(method.getRequestBodyDescription()))
+                    generator.write("description", method.getRequestBodyDescription());
+                generator.writeEnd();
+            }
+            generator.writeEnd();
+        }
+
+        private void buildParameters(final JsonGenerator generator, final Function<TypeIdentifier, JsonObject> schemas,
+                final SortedMethod sortedMethod, final ParameterType parameterType) {
             final String swaggerParameterType = getSwaggerParameterType(parameterType);
-            if (swaggerParameterType != null) {
-                final JsonObjectBuilder paramBuilder = schemaBuilder.build(e.getType()).add("name", e.getName())
-                        .add("in", swaggerParameterType).add("required", e.getDefaultValue() == null);
+            if (swaggerParameterType == null) {
+                return;
+            }
+            for (final MethodParameter e : sortedMethod.getParameters(parameterType)) {
+                generator.writeStartObject();
+                schemas.apply(e.getType()).forEach(generator::write);
+                generator.write("name", e.getName())
+                        .write("in", swaggerParameterType).write("required", e.getDefaultValue() == null);
                 if (!StringUtils.isBlank(e.getDescription())) {
-                    paramBuilder.add("description", e.getDescription());
+                    generator.write("description", e.getDescription());
                 }
                 if (!StringUtils.isBlank(e.getDefaultValue())) {
-                    paramBuilder.add("default", e.getDefaultValue());
+                    generator.write("default", e.getDefaultValue());
                 }
-                builder.add(paramBuilder);
+                generator.writeEnd();
             }
-        });
-    }
+        }
 
-    private JsonObjectBuilder buildResponses(final ResourceMethod method) {
-        final JsonObjectBuilder responses = Json.createObjectBuilder();
+        private void buildResponses(final JsonGenerator generator, final Function<TypeIdentifier, JsonObject> schemas,
+                final SortedMethod sortedMethod) {
+            generator.writeStartObject("responses");
 
-        method.getResponses().entrySet().stream().sorted(mapKeyComparator()).forEach(e -> {
-            final JsonObjectBuilder headers = Json.createObjectBuilder();
-            e.getValue().getHeaders().stream().sorted()
-                    .forEach(h -> headers.add(h, Json.createObjectBuilder().add("type", "string")));
+            for (final SortedResponse e : sortedMethod.getResponses()) {
+                generator.writeStartObject(Integer.toString(e.getStatus()))
+                        .write("description", STATUS_DESCRIPTIONS.getOrDefault(e.getStatus(), ""));
 
-            final JsonObjectBuilder response = Json.createObjectBuilder().add("description", Optional
-                    .ofNullable(Response.Status.fromStatusCode(e.getKey())).map(Response.Status::getReasonPhrase).orElse(""))
-                    .add("headers", headers);
+                generator.writeStartObject("headers");
+                for (final String h : e.getHeaders()) {
+                    generator.write(h, SchemaBuilder.SwaggerType.STRING.getSchema());
+                }
+                generator.writeEnd();
 
-            if (e.getValue().getResponseBody() != null) {
-                final JsonObject schema = schemaBuilder.build(e.getValue().getResponseBody()).build();
-                if (!schema.isEmpty())
-                    response.add("schema", schema);
+                if (e.getResponseBody() != null) {
+                    final JsonObject schema = schemas.apply(e.getResponseBody());
+                    if (!schema.isEmpty())
+                        generator.write("schema", schema);
+                }
+
+                generator.writeEnd();
             }
 
-            responses.add(e.getKey().toString(), response);
-        });
+            generator.writeEnd();
+        }
 
-        return responses;
+        private void appendDefinitions(final JsonGenerator generator) {
+            generator.writeStartObject("definitions");
+            final Set<String> patched = new HashSet<>();
+            schemaBuilder.forEachDefinition((name, definition) -> {
+                writeEntry(generator, definitionPatches, patched, name, definition);
+                metrics.onDefinitionEmitted();
+            });
+            writeAddedEntries(generator, definitionPatches, patched);
+            generator.writeEnd();
+        }
     }
 
-    private void appendDefinitions() {
-        builder.add("definitions", schemaBuilder.getDefinitions());
-    }
 
     private static String getSwaggerParameterType(final ParameterType parameterType) {
         switch (parameterType) {
@@ -288,43 +917,286 @@ public class EnrichedSwaggerBackend implements Backend {
         }
     }
 
-    private static byte[] serialize(final JsonObject jsonObject) {
-        try (final ByteArrayOutputStream output = new ByteArrayOutputStream()) {
-            final Map<String, ?> config = singletonMap(JsonGenerator.PRETTY_PRINTING, true);
-            final JsonWriter jsonWriter = Json.createWriterFactory(config).createWriter(output);
-            jsonWriter.write(jsonObject);
-            jsonWriter.close();
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-            return output.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException("Could not write Swagger output", e);
+    private static String toFingerprint(final byte[] hash) {
+        final StringBuilder builder = new StringBuilder("sha256:");
+        for (final byte b : hash) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    // closes the output
+    private void serialize(final OutputStream output, final Consumer<JsonGenerator> writer) {
+        try (final JsonGenerator jsonGenerator = createGenerator(output)) {
+            writer.accept(jsonGenerator);
+        }
+    }
+
+    private JsonGenerator createGenerator(final OutputStream output) {
+        switch (options.getOutputFormat()) {
+        case MINIFIED_JSON:
+            return options.getMinifiedGeneratorFactory().createGenerator(output);
+        case CBOR:
+            return new CborGenerator(output);
+        default:
+            return options.getGeneratorFactory().createGenerator(output);
         }
     }
 
     private static class SchemaBuilder {
 
-        private final Map<String, Pair<String, JsonObject>> jsonDefinitions = new HashMap<>();
+        // the definitions built by this builder, a fragment builder has its own
+        private final Map<String, Pair<String, JsonObject>> jsonDefinitions = new ConcurrentHashMap<>();
+
+        // a type always leads to the same schema (objects are $ref) so no need to rebuild it
+        private final Map<TypeIdentifier, JsonObject> schemas = new ConcurrentHashMap<>();
+
+        // the naming state below is shared with the fragment builders, the names are the ones of the whole document
+        private final Object namingLock;
+
+        // type name -> definition name
+        private final Map<String, String> definitionNames;
+
+        // simple name -> last used suffix, avoids to rescan all the candidates on each collision
+        private final Map<String, Integer> definitionCounters;
+
+        private final Set<String> reservedNames;
+
+        // definition name -> type, only filled by assignNames to build a definition from its name
+        private final Map<String, TypeRepresentation.ConcreteTypeRepresentation> namedTypes;
+
+        // the types assignNames already visited, like the schema cache for build
+        private final Set<TypeIdentifier> namedSchemas;
+
+        private final LongAdder cacheHits;
+
+        private final LongAdder cacheMisses;
 
         private final Map<TypeIdentifier, TypeRepresentation> typeRepresentations;
 
-        SchemaBuilder(final Map<TypeIdentifier, TypeRepresentation> typeRepresentations) {
+        private final int maxDepth;
+
+        private final JsonBuilderFactory builders;
+
+        SchemaBuilder(final Map<TypeIdentifier, TypeRepresentation> typeRepresentations, final int maxDepth,
+                final JsonBuilderFactory builders) {
             this.typeRepresentations = typeRepresentations;
+            this.maxDepth = maxDepth;
+            this.builders = builders;
+            this.namingLock = new Object();
+            this.definitionNames = new HashMap<>();
+            this.definitionCounters = new HashMap<>();
+            this.reservedNames = new HashSet<>();
+            this.namedTypes = new HashMap<>();
+            this.namedSchemas = new HashSet<>();
+            this.cacheHits = new LongAdder();
+            this.cacheMisses = new LongAdder();
+        }
+
+        private SchemaBuilder(final SchemaBuilder names) {
+            this.typeRepresentations = names.typeRepresentations;
+            this.maxDepth = names.maxDepth;
+            this.builders = names.builders;
+            this.namingLock = names.namingLock;
+            this.definitionNames = names.definitionNames;
+            this.definitionCounters = names.definitionCounters;
+            this.reservedNames = names.reservedNames;
+            this.namedTypes = names.namedTypes;
+            this.namedSchemas = names.namedSchemas;
+            this.cacheHits = names.cacheHits;
+            this.cacheMisses = names.cacheMisses;
+        }
+
+        /**
+         * A builder for a single fragment of a lazy document: it uses the names of this builder and is dropped
+         * with the fragment so the built definitions and schemas are not kept. Fragment builders can be used
+         * concurrently.
+         */
+        SchemaBuilder newFragmentBuilder() {
+            return new SchemaBuilder(this);
+        }
+
+        // the schema of a type in a path fragment, the definitions it references are not needed
+        JsonObject buildReference(final TypeIdentifier identifier) {
+            return build(identifier, new ArrayDeque<>());
+        }
+
+        // drops what was built, the names are kept
+        void clear() {
+            jsonDefinitions.clear();
+            schemas.clear();
+        }
+
+        long getCacheHits() {
+            return cacheHits.sum();
+        }
+
+        long getCacheMisses() {
+            return cacheMisses.sum();
+        }
+
+        JsonObject build(final TypeIdentifier identifier) {
+            // the definitions met while building the schema, the top one is the one being filled;
+            // a depth first traversal keeps the naming order of the previous recursive implementation
+            final Deque<PendingDefinition> pending = new ArrayDeque<>();
+            final JsonObject schema = build(identifier, pending);
+            buildPending(pending);
+            return schema;
+        }
+
+        /**
+         * Names the definitions a build of this type would create, in the same order, without building them.
+         * Once the names are assigned a definition can be built alone with resolveDefinition.
+         */
+        void assignNames(final TypeIdentifier identifier) {
+            final Deque<Iterator<TypeIdentifier>> pending = new ArrayDeque<>();
+            assignNames(identifier, pending);
+            while (!pending.isEmpty()) {
+                final Iterator<TypeIdentifier> properties = pending.peek();
+                if (properties.hasNext()) {
+                    assignNames(properties.next(), pending);
+                } else {
+                    pending.pop();
+                }
+            }
+        }
+
+        // builds a definition named by assignNames, null if there is no such definition; the definitions it
+        // references are only named (their $ref is all it needs), they are built by their own request
+        JsonObject resolveDefinition(final String name) {
+            final JsonObject existing = getDefinition(name);
+            final TypeRepresentation.ConcreteTypeRepresentation representation = namedTypes.get(name);
+            if (existing != null || representation == null) {
+                return existing;
+            }
+            final Deque<PendingDefinition> pending = new ArrayDeque<>();
+            addObject(builders.createObjectBuilder(), representation.getIdentifier(), representation.getProperties(),
+                    pending, new boolean[1]);
+            final PendingDefinition definition = pending.peek();
+            if (definition == null) { // already reserved
+                return getDefinition(name);
+            }
+            while (definition.properties.hasNext()) {
+                final Map.Entry<String, TypeIdentifier> property = definition.properties.next();
+                definition.builder.add(property.getKey(), build(property.getValue(), pending));
+                while (pending.peek() != definition) { // reserved so the next properties see it like in a full build
+                    pending.pop();
+                }
+            }
+            pending.pop();
+            putDefinition(definition);
+            return getDefinition(name);
+        }
+
+        private void buildPending(final Deque<PendingDefinition> pending) {
+            while (!pending.isEmpty()) {
+                final PendingDefinition definition = pending.peek();
+                if (definition.properties.hasNext()) { // can push the definition of the property type
+                    final Map.Entry<String, TypeIdentifier> property = definition.properties.next();
+                    definition.builder.add(property.getKey(), build(property.getValue(), pending));
+                } else {
+                    pending.pop();
+                    putDefinition(definition);
+                }
+            }
+        }
+
+        private void putDefinition(final PendingDefinition definition) {
+            jsonDefinitions.put(definition.name, Pair.of(definition.type, builders.createObjectBuilder()
+                    .add("properties", definition.builder)
+                    .add("x-restlet", MODEL_SECTION_EXTENSION)
+                    .build()));
         }
 
-        JsonObjectBuilder build(final TypeIdentifier identifier) {
+        // mirrors build(identifier, pending) and doBuild for the naming only
+        private void assignNames(final TypeIdentifier identifier, final Deque<Iterator<TypeIdentifier>> pending) {
+            if (namedSchemas.contains(identifier) || toSwaggerType(identifier.getType()).isPrimitive()) {
+                return;
+            }
+            final TypeRepresentation representation = typeRepresentations.get(identifier);
+            final boolean[] truncated = new boolean[1];
+            if (representation != null) {
+                representation.accept(new TypeRepresentationVisitor() {
+
+                    @Override
+                    public void visit(final TypeRepresentation.ConcreteTypeRepresentation representation) {
+                        if (!toSwaggerType(representation.getIdentifier().getType()).isPrimitive()) {
+                            assignName(representation, pending, truncated);
+                        }
+                    }
+
+                    @Override
+                    public void visitStart(final TypeRepresentation.CollectionTypeRepresentation representation) {
+                        // no-op
+                    }
+
+                    @Override
+                    public void visitEnd(final TypeRepresentation.CollectionTypeRepresentation representation) {
+                        // no-op
+                    }
+
+                    @Override
+                    public void visit(final TypeRepresentation.EnumTypeRepresentation representation) {
+                        // no-op
+                    }
+                });
+            }
+            if (!truncated[0]) {
+                namedSchemas.add(identifier);
+            }
+        }
+
+        // mirrors addObject for the naming only
+        private void assignName(final TypeRepresentation.ConcreteTypeRepresentation representation,
+                final Deque<Iterator<TypeIdentifier>> pending, final boolean[] truncated) {
+            final String type = representation.getIdentifier().getName();
+            if ("[B".equals(type) || definitionNames.containsKey(type)) {
+                return;
+            }
+            if (maxDepth > 0 && pending.size() >= maxDepth) {
+                truncated[0] = true;
+                return;
+            }
+            synchronized (namingLock) {
+                namedTypes.put(buildDefinition(type), representation);
+            }
+            pending.push(representation.getProperties().entrySet().stream().sorted(mapKeyComparator())
+                    .map(Map.Entry::getValue).iterator());
+        }
+
+        private JsonObject build(final TypeIdentifier identifier, final Deque<PendingDefinition> pending) {
+            final JsonObject cached = schemas.get(identifier);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+            cacheMisses.increment();
+
+            final boolean[] truncated = new boolean[1];
+            final JsonObject schema = doBuild(identifier, pending, truncated);
+            if (truncated[0]) { // would be wrong at a lower depth
+                return schema;
+            }
+            final JsonObject existing = schemas.putIfAbsent(identifier, schema);
+            return existing == null ? schema : existing;
+        }
+
+        private JsonObject doBuild(final TypeIdentifier identifier, final Deque<PendingDefinition> pending,
+                final boolean[] truncated) {
             final SchemaBuilder.SwaggerType type = toSwaggerType(identifier.getType());
-            switch (type) {
-            case BOOLEAN:
-            case INTEGER:
-            case NUMBER:
-            case NULL:
-            case STRING:
-                final JsonObjectBuilder builder = Json.createObjectBuilder();
-                addPrimitive(builder, type);
-                return builder;
+            if (type.isPrimitive()) {
+                return type.getSchema();
             }
 
-            final JsonObjectBuilder builder = Json.createObjectBuilder();
+            final JsonObjectBuilder builder = builders.createObjectBuilder();
 
             final TypeRepresentationVisitor visitor = new TypeRepresentationVisitor() {
 
@@ -332,12 +1204,19 @@ public class EnrichedSwaggerBackend implements Backend {
 
                 @Override
                 public void visit(final TypeRepresentation.ConcreteTypeRepresentation representation) {
-                    final JsonObjectBuilder nestedBuilder = inCollection ? Json.createObjectBuilder() : builder;
-                    add(nestedBuilder, representation);
+                    if (!inCollection) {
+                        add(builder, representation, pending, truncated);
+                        return;
+                    }
 
-                    if (inCollection) {
-                        builder.add("items", nestedBuilder.build());
+                    final SchemaBuilder.SwaggerType type = toSwaggerType(representation.getIdentifier().getType());
+                    if (type.isPrimitive()) {
+                        builder.add("items", type.getSchema());
+                        return;
                     }
+                    final JsonObjectBuilder nestedBuilder = builders.createObjectBuilder();
+                    add(nestedBuilder, representation, pending, truncated);
+                    builder.add("items", nestedBuilder.build());
                 }
 
                 @Override
@@ -357,7 +1236,7 @@ public class EnrichedSwaggerBackend implements Backend {
                     builder.add("type", "string");
                     if (!representation.getEnumValues().isEmpty()) {
                         final JsonArrayBuilder array = representation.getEnumValues().stream().sorted()
-                                .collect(Json::createArrayBuilder, JsonArrayBuilder::add, JsonArrayBuilder::add);
+                                .collect(builders::createArrayBuilder, JsonArrayBuilder::add, JsonArrayBuilder::add);
                         builder.add("enum", array);
                     }
                 }
@@ -365,63 +1244,70 @@ public class EnrichedSwaggerBackend implements Backend {
 
             final TypeRepresentation representation = typeRepresentations.get(identifier);
             if (representation == null)
-                builder.add("type", "object");
-            else
-                representation.accept(visitor);
-            return builder;
+                return SchemaBuilder.SwaggerType.OBJECT.getSchema();
+            representation.accept(visitor);
+            return builder.build();
+        }
+
+        // the simple name of the type of a definition, the name itself for a definition added by a patch
+        String getSimpleName(final String definition) {
+            final Pair<String, JsonObject> type = jsonDefinitions.get(definition);
+            return type == null ? definition : toSimpleName(type.getLeft());
+        }
+
+        JsonObject getDefinition(final String name) {
+            final Pair<String, JsonObject> definition = jsonDefinitions.get(name);
+            return definition == null ? null : definition.getRight();
         }
 
-        JsonObject getDefinitions() {
-            final JsonObjectBuilder builder = Json.createObjectBuilder();
+        void forEachDefinition(final BiConsumer<String, JsonObject> consumer) {
             jsonDefinitions.entrySet().stream().sorted(mapKeyComparator())
-                    .forEach(e -> builder.add(e.getKey(), e.getValue().getRight()));
-            return builder.build();
+                    .forEach(e -> consumer.accept(e.getKey(), e.getValue().getRight()));
         }
 
-        private void add(final JsonObjectBuilder builder, final TypeRepresentation.ConcreteTypeRepresentation representation) {
+        private void add(final JsonObjectBuilder builder, final TypeRepresentation.ConcreteTypeRepresentation representation,
+                final Deque<PendingDefinition> pending, final boolean[] truncated) {
             final SchemaBuilder.SwaggerType type = toSwaggerType(representation.getIdentifier().getType());
-            switch (type) {
-            case BOOLEAN:
-            case INTEGER:
-            case NUMBER:
-            case NULL:
-            case STRING:
+            if (type.isPrimitive()) {
                 addPrimitive(builder, type);
                 return;
             }
 
-            addObject(builder, representation.getIdentifier(), representation.getProperties());
+            addObject(builder, representation.getIdentifier(), representation.getProperties(), pending, truncated);
         }
 
         private void addObject(final JsonObjectBuilder builder, final TypeIdentifier identifier,
-                final Map<String, TypeIdentifier> properties) {
+                final Map<String, TypeIdentifier> properties, final Deque<PendingDefinition> pending,
+                final boolean[] truncated) {
             final String type = identifier.getName();
             if ("[B".equals(type)) { // byte array
-                builder.add("type", "array")
-                    .add("items", Json.createObjectBuilder().add("type", "string").add("format", "binary"));
+                builder.add("type", "array").add("items", BINARY_ITEMS);
                 return;
             }
 
-            final String definition = buildDefinition(type);
-
-            if (jsonDefinitions.containsKey(definition)) {
-                builder.add("$ref", "#/definitions/" + definition);
-                return;
-            }
+            final String definition;
+            synchronized (namingLock) { // naming and reservation must be atomic when paths are rendered concurrently
+                // not checked on the name only since assignNames can name a definition before it is built
+                final String named = definitionNames.get(type);
+                if (maxDepth > 0 && pending.size() >= maxDepth && (named == null || !jsonDefinitions.containsKey(named))) {
+                    builder.add("type", "object"); // too deep, not expanded
+                    truncated[0] = true;
+                    return;
+                }
 
-            // reserve definition
-            jsonDefinitions.put(definition, Pair.of(type, Json.createObjectBuilder().build()));
+                definition = buildDefinition(type);
 
-            final JsonObjectBuilder nestedBuilder = Json.createObjectBuilder();
+                if (jsonDefinitions.containsKey(definition)) {
+                    builder.add("$ref", "#/definitions/" + definition);
+                    return;
+                }
 
-            properties.entrySet().stream().sorted(mapKeyComparator())
-                    .forEach(e -> nestedBuilder.add(e.getKey(), build(e.getValue())));
-            jsonDefinitions.put(definition,
-                    Pair.of(type, Json.createObjectBuilder()
-                                                      .add("properties", nestedBuilder)
-                                                      .add("x-restlet", Json.createObjectBuilder().add("section", MODEL_SECTION))
-                                                      .build()));
+                // reserve definition
+                jsonDefinitions.put(definition, Pair.of(type, JsonValue.EMPTY_JSON_OBJECT));
+            }
 
+            // the properties are resolved by the caller loop, not recursively
+            pending.push(new PendingDefinition(definition, type, properties, builders.createObjectBuilder()));
             builder.add("$ref", "#/definitions/" + definition);
         }
 
@@ -429,20 +1315,46 @@ public class EnrichedSwaggerBackend implements Backend {
             builder.add("type", type.toString());
         }
 
+        // must be called with the naming lock, returns a unique name per type whatever the collisions are
         private String buildDefinition(final String typeName) {
-            final String definition = typeName.startsWith(TypeIdentifier.DYNAMIC_TYPE_PREFIX) ? "JsonObject"
+            final String existing = definitionNames.get(typeName);
+            if (existing != null)
+                return existing;
+
+            final String simpleName = toSimpleName(typeName);
+
+            int index = definitionCounters.getOrDefault(simpleName, 0) + 1;
+            String definition = index == 1 ? simpleName : simpleName + '_' + index;
+            while (!reservedNames.add(definition)) { // a type can be named like a generated one (Foo_2)
+                definition = simpleName + '_' + ++index;
+            }
+            definitionCounters.put(simpleName, index);
+            definitionNames.put(typeName, definition);
+            return definition;
+        }
+
+        private static String toSimpleName(final String typeName) {
+            return typeName.startsWith(TypeIdentifier.DYNAMIC_TYPE_PREFIX) ? "JsonObject"
                     : typeName.substring(typeName.lastIndexOf('/') + 1, typeName.length() - 1);
+        }
 
-            final Pair<String, JsonObject> containedEntry = jsonDefinitions.get(definition);
-            if (containedEntry == null || containedEntry.getLeft() != null && containedEntry.getLeft().equals(typeName))
-                return definition;
+        private static class PendingDefinition {
 
-            if (!definition.matches("_\\d+$"))
-                return definition + "_2";
+            private final String name;
 
-            final int separatorIndex = definition.lastIndexOf('_');
-            final int index = Integer.parseInt(definition.substring(separatorIndex + 1));
-            return definition.substring(0, separatorIndex + 1) + (index + 1);
+            private final String type;
+
+            private final Iterator<Map.Entry<String, TypeIdentifier>> properties;
+
+            private final JsonObjectBuilder builder;
+
+            private PendingDefinition(final String name, final String type, final Map<String, TypeIdentifier> properties,
+                    final JsonObjectBuilder builder) {
+                this.name = name;
+                this.type = type;
+                this.builder = builder;
+                this.properties = properties.entrySet().stream().sorted(mapKeyComparator()).iterator();
+            }
         }
 
         private static SchemaBuilder.SwaggerType toSwaggerType(final String type) {
@@ -470,10 +1382,30 @@ public class EnrichedSwaggerBackend implements Backend {
             OBJECT,
             STRING;
 
+            private final JsonObject schema = Json.createObjectBuilder().add("type", toString()).build();
+
             @Override
             public String toString() {
                 return super.toString().toLowerCase();
             }
+
+            // shared {"type":"<type>"} fragment
+            JsonObject getSchema() {
+                return schema;
+            }
+
+            boolean isPrimitive() {
+                switch (this) {
+                case BOOLEAN:
+                case INTEGER:
+                case NUMBER:
+                case NULL:
+                case STRING:
+                    return true;
+                default:
+                    return false;
+                }
+            }
         }
 
     }
@@ -487,6 +1419,21 @@ public class EnrichedSwaggerBackend implements Backend {
 
     }
 
+    enum SwaggerShardKey {
+
+        SECTION,
+        TAG
+
+    }
+
+    enum SwaggerOutputFormat {
+
+        JSON,
+        MINIFIED_JSON,
+        CBOR
+
+    }
+
     public static class SwaggerOptions {
 
         public static final String DOMAIN = "domain";
@@ -499,6 +1446,28 @@ public class EnrichedSwaggerBackend implements Backend {
 
         public static final String JSON_PATCH = "jsonPatch";
 
+        public static final String SWAGGER_PARALLELISM = "swaggerParallelism";
+
+        public static final String SWAGGER_CACHE = "swaggerCache";
+
+        public static final String SWAGGER_OUTPUT_FORMAT = "swaggerOutputFormat";
+
+        public static final String SWAGGER_METRICS_REPORT = "swaggerMetricsReport";
+
+        public static final String SWAGGER_MAX_DEPTH = "swaggerMaxDepth";
+
+        public static final String SWAGGER_SHARDS = "swaggerShards";
+
+        public static final String SWAGGER_SHARD_KEY = "swaggerShardKey";
+
+        public static final String SWAGGER_COMPACT_DEFINITIONS = "swaggerCompactDefinitions";
+
+        public static final String SWAGGER_COMPACT_ACROSS_NAMES = "swaggerCompactAcrossNames";
+
+        public static final String SWAGGER_FINGERPRINT = "swaggerFingerprint";
+
+        public static final String SWAGGER_JSON_PROVIDER = "swaggerJsonProvider";
+
         private static final String DEFAULT_DOMAIN = "";
 
         private static final Set<SwaggerScheme> DEFAULT_SCHEMES = EnumSet.of(SwaggerScheme.HTTP);
@@ -507,6 +1476,20 @@ public class EnrichedSwaggerBackend implements Backend {
 
         private static final int DEFAULT_TAGS_PATH_OFFSET = 0;
 
+        private static final int DEFAULT_PARALLELISM = 1;
+
+        private static final SwaggerOutputFormat DEFAULT_OUTPUT_FORMAT = SwaggerOutputFormat.JSON;
+
+        private static final int DEFAULT_MAX_DEPTH = 0;
+
+        private static final SwaggerShardKey DEFAULT_SHARD_KEY = SwaggerShardKey.SECTION;
+
+        private static final boolean DEFAULT_COMPACT_DEFINITIONS = false;
+
+        private static final boolean DEFAULT_COMPACT_ACROSS_NAMES = false;
+
+        private static final boolean DEFAULT_FINGERPRINT = false;
+
         private String domain = DEFAULT_DOMAIN;
 
         private Set<SwaggerScheme> schemes = DEFAULT_SCHEMES;
@@ -515,7 +1498,45 @@ public class EnrichedSwaggerBackend implements Backend {
 
         private int tagsPathOffset = DEFAULT_TAGS_PATH_OFFSET;
 
-        private JsonPatch jsonPatch;
+        private String jsonPatchLocations;
+
+        private SwaggerPatch jsonPatch;
+
+        private int parallelism = DEFAULT_PARALLELISM;
+
+        private Path cache;
+
+        private SwaggerOutputFormat outputFormat = DEFAULT_OUTPUT_FORMAT;
+
+        private SwaggerMetricsReport metricsReport;
+
+        private int maxDepth = DEFAULT_MAX_DEPTH;
+
+        private Path shards;
+
+        private SwaggerShardKey shardKey = DEFAULT_SHARD_KEY;
+
+        private boolean compactDefinitions = DEFAULT_COMPACT_DEFINITIONS;
+
+        private boolean compactAcrossNames = DEFAULT_COMPACT_ACROSS_NAMES;
+
+        private boolean fingerprint = DEFAULT_FINGERPRINT;
+
+        private JsonProvider jsonProvider;
+
+        private JsonBuilderFactory builderFactory;
+
+        private JsonGeneratorFactory generatorFactory;
+
+        private JsonGeneratorFactory minifiedGeneratorFactory;
+
+        private JsonReaderFactory readerFactory;
+
+        private JsonParserFactory parserFactory;
+
+        SwaggerOptions() {
+            useJsonProvider(JsonProvider.provider());
+        }
 
         String getDomain() {
             return domain;
@@ -533,11 +1554,91 @@ public class EnrichedSwaggerBackend implements Backend {
             return tagsPathOffset;
         }
 
-        JsonPatch getJsonPatch() {
+        SwaggerPatch getJsonPatch() {
             return jsonPatch;
         }
 
+        int getParallelism() {
+            return parallelism;
+        }
+
+        // the files of a render are the given ones (a project of the batch renderer) or the configured ones
+        Path getCache(final Map<String, String> files) {
+            return files.containsKey(SWAGGER_CACHE) ? Paths.get(files.get(SWAGGER_CACHE)) : cache;
+        }
+
+        SwaggerOutputFormat getOutputFormat() {
+            return outputFormat;
+        }
+
+        SwaggerMetricsReport getMetricsReport(final Map<String, String> files) {
+            return files.containsKey(SWAGGER_METRICS_REPORT)
+                    ? new SwaggerMetricsReport(Paths.get(files.get(SWAGGER_METRICS_REPORT)), generatorFactory)
+                    : metricsReport;
+        }
+
+        int getMaxDepth() {
+            return maxDepth;
+        }
+
+        Path getShards(final Map<String, String> files) {
+            return files.containsKey(SWAGGER_SHARDS) ? Paths.get(files.get(SWAGGER_SHARDS)) : shards;
+        }
+
+        SwaggerShardKey getShardKey() {
+            return shardKey;
+        }
+
+        boolean isCompactDefinitions() {
+            return compactDefinitions;
+        }
+
+        boolean isCompactAcrossNames() {
+            return compactAcrossNames;
+        }
+
+        boolean isFingerprint() {
+            return fingerprint;
+        }
+
+        JsonBuilderFactory getBuilderFactory() {
+            return builderFactory;
+        }
+
+        // pretty printing
+        JsonGeneratorFactory getGeneratorFactory() {
+            return generatorFactory;
+        }
+
+        JsonGeneratorFactory getMinifiedGeneratorFactory() {
+            return minifiedGeneratorFactory;
+        }
+
+        JsonReaderFactory getReaderFactory() {
+            return readerFactory;
+        }
+
+        JsonParserFactory getParserFactory() {
+            return parserFactory;
+        }
+
+        // everything impacting the output, used to invalidate the render cache
+        String signature() {
+            return domain + '|' + schemes.stream().map(Enum::name).sorted().collect(joining(",")) + '|' + renderTags
+                    + '|' + tagsPathOffset + '|' + (jsonPatch == null ? "" : jsonPatch.getOperations().toString())
+                    + '|' + outputFormat + '|' + maxDepth + '|' + compactDefinitions + '|' + compactAcrossNames
+                    + '|' + fingerprint + '|' + jsonProvider.getClass().getName();
+        }
+
         void configure(final Map<String, String> config) {
+            // first since the other options can use it
+            if (config.containsKey(SWAGGER_JSON_PROVIDER)) {
+                final String provider = config.get(SWAGGER_JSON_PROVIDER);
+                if (!provider.equals(jsonProvider.getClass().getName())) {
+                    useJsonProvider(loadJsonProvider(provider));
+                }
+            }
+
             if (config.containsKey(SWAGGER_TAGS_PATH_OFFSET)) {
                 int swaggerTagsPathOffset = Integer.parseInt(config.get(SWAGGER_TAGS_PATH_OFFSET));
 
@@ -562,8 +1663,99 @@ public class EnrichedSwaggerBackend implements Backend {
                 renderTags = Boolean.parseBoolean(config.get(RENDER_SWAGGER_TAGS));
             }
 
-            if (config.containsKey(JSON_PATCH)) {
-                jsonPatch = readPatch(config.get(JSON_PATCH));
+            // compiled once per instance and JSON provider
+            final String locations = config.getOrDefault(JSON_PATCH, jsonPatchLocations);
+            if (locations != null && (jsonPatch == null || !locations.equals(jsonPatchLocations))) {
+                jsonPatch = readPatch(locations);
+                jsonPatchLocations = jsonPatch == null ? null : locations;
+            }
+
+            if (config.containsKey(SWAGGER_PARALLELISM)) {
+                final int swaggerParallelism = Integer.parseInt(config.get(SWAGGER_PARALLELISM));
+
+                if (swaggerParallelism < 0) {
+                    System.err.println("Please provide positive integer number for option --swaggerParallelism\n");
+                    throw new IllegalArgumentException(
+                            "Please provide positive integer number for option --swaggerParallelism");
+                }
+
+                // 0 means "use all available cores"
+                parallelism = swaggerParallelism == 0 ? Runtime.getRuntime().availableProcessors() : swaggerParallelism;
+            }
+
+            if (config.containsKey(SWAGGER_CACHE)) {
+                cache = Paths.get(config.get(SWAGGER_CACHE));
+            }
+
+            if (config.containsKey(SWAGGER_OUTPUT_FORMAT)) {
+                outputFormat = extractOutputFormat(config.get(SWAGGER_OUTPUT_FORMAT));
+            }
+
+            if (config.containsKey(SWAGGER_METRICS_REPORT)) {
+                metricsReport = new SwaggerMetricsReport(Paths.get(config.get(SWAGGER_METRICS_REPORT)), generatorFactory);
+            }
+
+            if (config.containsKey(SWAGGER_MAX_DEPTH)) {
+                final int swaggerMaxDepth = Integer.parseInt(config.get(SWAGGER_MAX_DEPTH));
+
+                if (swaggerMaxDepth < 0) {
+                    System.err.println("Please provide positive integer number for option --swaggerMaxDepth\n");
+                    throw new IllegalArgumentException(
+                            "Please provide positive integer number for option --swaggerMaxDepth");
+                }
+
+                // 0 means "no limit", deeper types are rendered as plain objects
+                maxDepth = swaggerMaxDepth;
+            }
+
+            if (config.containsKey(SWAGGER_SHARDS)) {
+                shards = Paths.get(config.get(SWAGGER_SHARDS));
+            }
+
+            if (config.containsKey(SWAGGER_SHARD_KEY)) {
+                shardKey = extractShardKey(config.get(SWAGGER_SHARD_KEY));
+            }
+
+            if (config.containsKey(SWAGGER_COMPACT_DEFINITIONS)) {
+                // merges the structurally identical definitions (Foo/Foo_2) and drops the unreferenced ones
+                compactDefinitions = Boolean.parseBoolean(config.get(SWAGGER_COMPACT_DEFINITIONS));
+            }
+
+            if (config.containsKey(SWAGGER_COMPACT_ACROSS_NAMES)) {
+                // also merges identical definitions of types with different names, it changes the API contract
+                compactAcrossNames = Boolean.parseBoolean(config.get(SWAGGER_COMPACT_ACROSS_NAMES));
+            }
+
+            if (config.containsKey(SWAGGER_FINGERPRINT)) {
+                // adds x-fingerprint, a hash of the document in the output format, as last member (not to the shards)
+                fingerprint = Boolean.parseBoolean(config.get(SWAGGER_FINGERPRINT));
+            }
+        }
+
+        // resolved once per backend, JsonProvider.provider() and the Json.create* methods look the provider up on each call
+        private void useJsonProvider(final JsonProvider provider) {
+            jsonProvider = provider;
+            builderFactory = provider.createBuilderFactory(emptyMap());
+            generatorFactory = provider.createGeneratorFactory(singletonMap(JsonGenerator.PRETTY_PRINTING, true));
+            minifiedGeneratorFactory = provider.createGeneratorFactory(emptyMap());
+            readerFactory = provider.createReaderFactory(emptyMap());
+            parserFactory = provider.createParserFactory(emptyMap());
+            // created with the previous provider
+            jsonPatch = null;
+            if (metricsReport != null) {
+                metricsReport = new SwaggerMetricsReport(metricsReport.getReport(), generatorFactory);
+            }
+        }
+
+        static JsonProvider loadJsonProvider(final String provider) {
+            final ClassLoader loader = Optional.ofNullable(Thread.currentThread().getContextClassLoader())
+                    .orElseGet(EnrichedSwaggerBackend.class::getClassLoader);
+            try {
+                return JsonProvider.class.cast(loader.loadClass(provider).getConstructor().newInstance());
+            } catch (final ReflectiveOperationException | ClassCastException e) {
+                System.err.println("Please provide a JsonProvider implementation for option --swaggerJsonProvider\n");
+                throw new IllegalArgumentException(
+                        "Please provide a JsonProvider implementation for option --swaggerJsonProvider", e);
             }
         }
 
@@ -587,10 +1779,33 @@ public class EnrichedSwaggerBackend implements Backend {
             }
         }
 
-        private static JsonPatch readPatch(final String patchFile) {
+        private SwaggerOutputFormat extractOutputFormat(final String format) {
+            switch (format.toLowerCase()) {
+            case "json":
+                return SwaggerOutputFormat.JSON;
+            case "minified-json":
+                return SwaggerOutputFormat.MINIFIED_JSON;
+            case "cbor":
+                return SwaggerOutputFormat.CBOR;
+            default:
+                throw new IllegalArgumentException("Unknown swagger output format " + format);
+            }
+        }
+
+        private SwaggerShardKey extractShardKey(final String key) {
+            switch (key.toLowerCase()) {
+            case "section":
+                return SwaggerShardKey.SECTION;
+            case "tag":
+                return SwaggerShardKey.TAG;
+            default:
+                throw new IllegalArgumentException("Unknown swagger shard key " + key);
+            }
+        }
+
+        private SwaggerPatch readPatch(final String patchLocations) {
             try {
-                final JsonArray patchArray = Json.createReader(Files.newBufferedReader(Paths.get(patchFile))).readArray();
-                return Json.createPatchBuilder(patchArray).build();
+                return SwaggerPatch.read(patchLocations, jsonProvider, builderFactory, readerFactory);
             } catch (Exception e) {
                 LogProvider.error("Could not read JSON patch from the specified location, reason: " + e.getMessage());
                 LogProvider.error("Patch won't be applied");
@@ -0,0 +1,31 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import java.util.Set;
+
+// names of the files split from a document (shards, asciidoc includes)
+final class FileNames {
+
+    private FileNames() {
+        // no-op
+    }
+
+    /**
+     * @param name the name to turn into a file name, the unsafe characters are replaced by '_'.
+     * @param usedFiles the lowercased names already used, the returned one is added.
+     * @param extension the extension of the file, including the dot.
+     * @return a file name unique in usedFiles, case insensitively.
+     */
+    static String toFileName(final String name, final Set<String> usedFiles, final String extension) {
+        final StringBuilder safe = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            safe.append(Character.isLetterOrDigit(c) || c == '-' || c == '_' ? c : '_');
+        }
+        final String base = safe.length() == 0 ? "default" : safe.toString();
+        String file = base + extension;
+        for (int i = 2; !usedFiles.add(file.toLowerCase()); i++) { // case insensitive file systems
+            file = base + '_' + i + extension;
+        }
+        return file;
+    }
+}
@@ -0,0 +1,347 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerationException;
+import javax.json.stream.JsonGenerator;
+
+// JSON-P generator building the written document in memory, it avoids to serialize a document and parse it back
+// when it is needed as a tree (patch, shards, parallel paths)
+class JsonTreeGenerator implements JsonGenerator {
+
+    private final JsonBuilderFactory builders;
+
+    private final Deque<Container> containers = new ArrayDeque<>();
+
+    // set by writeKey, the name of the next value
+    private String key;
+
+    private JsonValue value;
+
+    // the size of the document in minified JSON (string escaping excepted) to know what is held in memory
+    private long size;
+
+    JsonTreeGenerator(final JsonBuilderFactory builders) {
+        this.builders = builders;
+    }
+
+    /**
+     * @return the written value, null until its end is written.
+     */
+    JsonValue getValue() {
+        return value;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    @Override
+    public JsonGenerator writeStartObject() {
+        return start(new Container(nextKey(), builders.createObjectBuilder(), null));
+    }
+
+    @Override
+    public JsonGenerator writeStartObject(final String name) {
+        return start(new Container(name, builders.createObjectBuilder(), null));
+    }
+
+    @Override
+    public JsonGenerator writeKey(final String name) {
+        if (key != null || containers.isEmpty() || containers.peek().object == null) {
+            throw new JsonGenerationException("A key must be written in an object");
+        }
+        key = name;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeStartArray() {
+        return start(new Container(nextKey(), null, builders.createArrayBuilder()));
+    }
+
+    @Override
+    public JsonGenerator writeStartArray(final String name) {
+        return start(new Container(name, null, builders.createArrayBuilder()));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final JsonValue value) {
+        size += sizeOf(value);
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final String value) {
+        size += value.length() + 2;
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final BigInteger value) {
+        size += value.toString().length();
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final BigDecimal value) {
+        size += value.toString().length();
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final int value) {
+        size += Integer.toString(value).length();
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final long value) {
+        size += Long.toString(value).length();
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final double value) {
+        size += Double.toString(value).length();
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator write(final String name, final boolean value) {
+        size += value ? 4 : 5;
+        return add(name, object -> object.add(name, value));
+    }
+
+    @Override
+    public JsonGenerator writeNull(final String name) {
+        size += 4;
+        return add(name, object -> object.addNull(name));
+    }
+
+    @Override
+    public JsonGenerator writeEnd() {
+        if (containers.isEmpty()) {
+            throw new JsonGenerationException("No object or array to end");
+        }
+        final Container container = containers.pop();
+        size += 2;
+        if (container.object != null) {
+            return end(container.name, container.object.build());
+        }
+        return end(container.name, container.array.build());
+    }
+
+    @Override
+    public JsonGenerator write(final JsonValue value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += sizeOf(value);
+        if (containers.isEmpty()) {
+            return end(null, value);
+        }
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator write(final String value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += value.length() + 2;
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator write(final BigDecimal value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += value.toString().length();
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator write(final BigInteger value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += value.toString().length();
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator write(final int value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += Integer.toString(value).length();
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator write(final long value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += Long.toString(value).length();
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator write(final double value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += Double.toString(value).length();
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator write(final boolean value) {
+        if (key != null) {
+            return write(nextKey(), value);
+        }
+        size += value ? 4 : 5;
+        return add(array -> array.add(value));
+    }
+
+    @Override
+    public JsonGenerator writeNull() {
+        if (key != null) {
+            return writeNull(nextKey());
+        }
+        size += 4;
+        return add(JsonArrayBuilder::addNull);
+    }
+
+    @Override
+    public void close() {
+        if (!containers.isEmpty()) {
+            throw new JsonGenerationException("Incomplete JSON, " + containers.size() + " values are not ended");
+        }
+    }
+
+    @Override
+    public void flush() {
+        // no-op
+    }
+
+    private String nextKey() {
+        final String name = key;
+        key = null;
+        return name;
+    }
+
+    private JsonGenerator start(final Container container) {
+        final Container parent = containers.peek();
+        if (container.name != null) {
+            if (parent == null || parent.object == null) {
+                throw new JsonGenerationException("A named value must be written in an object");
+            }
+            size += container.name.length() + 3;
+        } else if (parent != null && parent.array == null) {
+            throw new JsonGenerationException("A value without name must be written in an array");
+        }
+        if (parent != null) {
+            separate(parent);
+        }
+        containers.push(container);
+        return this;
+    }
+
+    private JsonGenerator end(final String name, final JsonValue built) {
+        if (containers.isEmpty()) {
+            value = built;
+        } else if (name != null) {
+            containers.peek().object.add(name, built);
+        } else {
+            containers.peek().array.add(built);
+        }
+        return this;
+    }
+
+    private JsonGenerator add(final String name, final Consumer<JsonObjectBuilder> writer) {
+        if (containers.isEmpty() || containers.peek().object == null) {
+            throw new JsonGenerationException("A named value must be written in an object");
+        }
+        size += name.length() + 3;
+        separate(containers.peek());
+        writer.accept(containers.peek().object);
+        return this;
+    }
+
+    private JsonGenerator add(final Consumer<JsonArrayBuilder> writer) {
+        if (containers.isEmpty() || containers.peek().array == null) {
+            throw new JsonGenerationException("A value without name must be written in an array");
+        }
+        separate(containers.peek());
+        writer.accept(containers.peek().array);
+        return this;
+    }
+
+    // the comma before all the values of a container but the first one
+    private void separate(final Container container) {
+        if (container.values++ > 0) {
+            size++;
+        }
+    }
+
+    private static long sizeOf(final JsonValue value) {
+        switch (value.getValueType()) {
+        case OBJECT:
+            long objectSize = Math.max(1, ((JsonObject) value).size()) + 1;
+            for (final Map.Entry<String, JsonValue> entry : ((JsonObject) value).entrySet()) {
+                objectSize += entry.getKey().length() + 3 + sizeOf(entry.getValue());
+            }
+            return objectSize;
+        case ARRAY:
+            long arraySize = Math.max(1, ((JsonArray) value).size()) + 1;
+            for (final JsonValue item : (JsonArray) value) {
+                arraySize += sizeOf(item);
+            }
+            return arraySize;
+        case STRING:
+            return ((JsonString) value).getString().length() + 2;
+        case NUMBER:
+            return ((JsonNumber) value).toString().length();
+        case TRUE:
+        case NULL:
+            return 4;
+        default:
+            return 5;
+        }
+    }
+
+    private static final class Container {
+
+        // null for an item of an array or the root
+        private final String name;
+
+        private final JsonObjectBuilder object;
+
+        private final JsonArrayBuilder array;
+
+        private int values;
+
+        private Container(final String name, final JsonObjectBuilder object, final JsonArrayBuilder array) {
+            this.name = name;
+            this.object = object;
+            this.array = array;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.sebastian_daschner.jaxrs_analyzer.backend.ComparatorUtils.parameterComparator;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.MethodParameter;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ParameterType;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Response;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeIdentifier;
+
+// the paths and methods in rendering order, computed once and shared by the backends rendering the same project
+class SortedResources {
+
+    private static final MethodParameter[] NO_PARAMETER = new MethodParameter[0];
+
+    private static final SortedMethod[] NO_METHOD = new SortedMethod[0];
+
+    private final Resources resources;
+
+    private final List<String> paths;
+
+    private final Map<String, List<ResourceMethod>> methods;
+
+    // built on demand since paths reused from a cache never need it, paths can be rendered concurrently
+    private final Map<String, SortedMethod[]> sortedMethods = new ConcurrentHashMap<>();
+
+    SortedResources(final Resources resources) {
+        this.resources = resources;
+        this.paths = unmodifiableList(resources.getResources().stream().sorted().collect(toList()));
+        this.methods = new HashMap<>(paths.size());
+        paths.forEach(path -> methods.put(path, unmodifiableList(resources.getMethods(path).stream()
+                .sorted(comparing(ResourceMethod::getMethod)).collect(toList()))));
+    }
+
+    Resources getResources() {
+        return resources;
+    }
+
+    List<String> getPaths() {
+        return paths;
+    }
+
+    List<ResourceMethod> getMethods(final String path) {
+        return methods.get(path);
+    }
+
+    /**
+     * Methods with the same HTTP method (differing by media types) are a single operation in Swagger: like the
+     * JSON builder of the tree rendering the last one is kept, at the position of the first one, the previous
+     * ones are only used for their schemas.
+     *
+     * @param path the resource path.
+     * @return the operations of this path with their media types, parameters and responses sorted.
+     */
+    SortedMethod[] getSortedMethods(final String path) {
+        return sortedMethods.computeIfAbsent(path, p -> {
+            final List<SortedMethod> operations = new ArrayList<>();
+            final List<SortedMethod> shadowed = new ArrayList<>();
+            final List<ResourceMethod> pathMethods = methods.get(p);
+            for (int i = 0; i < pathMethods.size(); i++) {
+                final ResourceMethod method = pathMethods.get(i);
+                // sorted by HTTP method so the same ones are contiguous
+                if (i + 1 < pathMethods.size() && pathMethods.get(i + 1).getMethod() == method.getMethod()) {
+                    shadowed.add(new SortedMethod(method, NO_METHOD));
+                } else {
+                    operations.add(new SortedMethod(method, shadowed.toArray(NO_METHOD)));
+                    shadowed.clear();
+                }
+            }
+            return operations.toArray(NO_METHOD);
+        });
+    }
+
+    static class SortedMethod {
+
+        private final ResourceMethod method;
+
+        private final String[] requestMediaTypes;
+
+        private final String[] responseMediaTypes;
+
+        private final Map<ParameterType, MethodParameter[]> parameters = new EnumMap<>(ParameterType.class);
+
+        private final SortedResponse[] responses;
+
+        private final SortedMethod[] shadowed;
+
+        private SortedMethod(final ResourceMethod method, final SortedMethod[] shadowed) {
+            this.method = method;
+            this.shadowed = shadowed;
+            this.requestMediaTypes = sort(method.getRequestMediaTypes());
+            this.responseMediaTypes = sort(method.getResponseMediaTypes());
+
+            final Map<ParameterType, List<MethodParameter>> byType = new EnumMap<>(ParameterType.class);
+            method.getMethodParameters().forEach(p -> byType.computeIfAbsent(p.getParameterType(), t -> new ArrayList<>()).add(p));
+            byType.forEach((type, list) -> {
+                final MethodParameter[] array = list.toArray(NO_PARAMETER);
+                Arrays.sort(array, parameterComparator());
+                parameters.put(type, array);
+            });
+
+            this.responses = method.getResponses().entrySet().stream()
+                    .map(e -> new SortedResponse(e.getKey(), e.getValue()))
+                    .toArray(SortedResponse[]::new);
+            Arrays.sort(responses, comparingInt(SortedResponse::getStatus));
+        }
+
+        ResourceMethod getMethod() {
+            return method;
+        }
+
+        String[] getRequestMediaTypes() {
+            return requestMediaTypes;
+        }
+
+        String[] getResponseMediaTypes() {
+            return responseMediaTypes;
+        }
+
+        MethodParameter[] getParameters(final ParameterType type) {
+            return parameters.getOrDefault(type, NO_PARAMETER);
+        }
+
+        SortedResponse[] getResponses() {
+            return responses;
+        }
+
+        /**
+         * @return the previous methods with the same HTTP method, replaced by this one.
+         */
+        SortedMethod[] getShadowed() {
+            return shadowed;
+        }
+    }
+
+    static class SortedResponse {
+
+        private final int status;
+
+        private final String[] headers;
+
+        private final TypeIdentifier responseBody;
+
+        private SortedResponse(final int status, final Response response) {
+            this.status = status;
+            this.headers = sort(response.getHeaders());
+            this.responseBody = response.getResponseBody();
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        String[] getHeaders() {
+            return headers;
+        }
+
+        TypeIdentifier getResponseBody() {
+            return responseBody;
+        }
+    }
+
+    private static String[] sort(final Collection<String> values) {
+        final String[] array = values.toArray(new String[values.size()]);
+        Arrays.sort(array);
+        return array;
+    }
+}
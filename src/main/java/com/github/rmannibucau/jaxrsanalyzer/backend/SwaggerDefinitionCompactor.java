@@ -0,0 +1,175 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+// merges the definitions with the same structure and the same class (same named types of different packages)
+// and drops the unused ones
+final class SwaggerDefinitionCompactor {
+
+    private static final String REF = "$ref";
+
+    private static final String REF_PREFIX = "#/definitions/";
+
+    private final JsonBuilderFactory builders;
+
+    // definition name -> class, only definitions of the same class can be merged
+    private final Function<String, String> classifier;
+
+    SwaggerDefinitionCompactor(final JsonBuilderFactory builders, final Function<String, String> classifier) {
+        this.builders = builders;
+        this.classifier = classifier;
+    }
+
+    JsonObject compact(final JsonObject document) {
+        if (!document.containsKey("definitions")) {
+            return document;
+        }
+        final JsonObject definitions = document.getJsonObject("definitions");
+
+        // a definition can reference another one (or itself) so identical structures are found by refining
+        // classes of definitions until references to equivalent classes give the same signature (like a DFA minimization)
+        final Map<String, Integer> classes = new HashMap<>();
+        final Map<String, Integer> initialClasses = new HashMap<>();
+        definitions.keySet().forEach(name -> classes.put(name,
+                initialClasses.computeIfAbsent(classifier.apply(name), k -> initialClasses.size())));
+        int classCount = initialClasses.size();
+        while (true) {
+            final Map<JsonValue, Integer> signatures = new HashMap<>();
+            final Map<String, Integer> refined = new HashMap<>();
+            for (final Map.Entry<String, JsonValue> definition : definitions.entrySet()) {
+                // the current class is part of the signature so a class can only be split
+                final JsonValue signature = builders.createArrayBuilder()
+                        .add(classes.get(definition.getKey()))
+                        .add(rewriteReferences(definition.getValue(), ref -> {
+                            final Integer target = classes.get(ref);
+                            return target == null ? "?" + ref : Integer.toString(target);
+                        }))
+                        .build();
+                refined.put(definition.getKey(), signatures.computeIfAbsent(signature, k -> signatures.size()));
+            }
+            classes.clear();
+            classes.putAll(refined);
+            if (signatures.size() == classCount) {
+                break;
+            }
+            classCount = signatures.size();
+        }
+
+        // the canonical name is the first one, i.e. Foo rather than Foo_2
+        final Map<Integer, String> canonicalNames = new HashMap<>();
+        new TreeMap<>(classes).forEach((name, clazz) -> canonicalNames.putIfAbsent(clazz, name));
+        final UnaryOperator<String> canonical = ref -> {
+            final Integer clazz = classes.get(ref);
+            return clazz == null ? ref : canonicalNames.get(clazz);
+        };
+
+        final JsonObjectBuilder result = builders.createObjectBuilder();
+        document.forEach((key, value) -> {
+            if (!"definitions".equals(key)) {
+                result.add(key, rewriteReferences(value, canonical));
+            }
+        });
+        final JsonObject rewritten = result.build();
+
+        // the reachability is computed on the rewritten definitions: a canonical definition can be only
+        // referenced through an alias in the original ones
+        final JsonObjectBuilder canonicalBuilder = builders.createObjectBuilder();
+        definitions.forEach((name, definition) -> {
+            if (canonical.apply(name).equals(name)) {
+                canonicalBuilder.add(name, rewriteReferences(definition, canonical));
+            }
+        });
+        final JsonObject canonicalDefinitions = canonicalBuilder.build();
+        final Set<String> reachable = findReferences(rewritten.values(), canonicalDefinitions);
+        final JsonObjectBuilder compacted = builders.createObjectBuilder();
+        canonicalDefinitions.forEach((name, definition) -> {
+            if (reachable.contains(name)) {
+                compacted.add(name, definition);
+            }
+        });
+
+        // keep the member order
+        final JsonObjectBuilder output = builders.createObjectBuilder();
+        document.forEach((key, value) -> output.add(key, "definitions".equals(key) ? compacted.build() : rewritten.get(key)));
+        return output.build();
+    }
+
+    /**
+     * @param roots the values to look for references into.
+     * @param definitions the definitions to follow the references into.
+     * @return the definitions referenced by the roots, directly or through other definitions.
+     */
+    static Set<String> findReferences(final Collection<JsonValue> roots, final JsonObject definitions) {
+        final Set<String> references = new HashSet<>();
+        final Deque<JsonValue> values = new ArrayDeque<>(roots);
+        while (!values.isEmpty()) {
+            final JsonValue value = values.pop();
+            switch (value.getValueType()) {
+            case OBJECT:
+                value.asJsonObject().forEach((key, nested) -> {
+                    final String reference = toReference(key, nested);
+                    if (reference == null) {
+                        values.push(nested);
+                    } else if (references.add(reference) && definitions.containsKey(reference)) {
+                        values.push(definitions.get(reference));
+                    }
+                });
+                break;
+            case ARRAY:
+                value.asJsonArray().forEach(values::push);
+                break;
+            default:
+                break;
+            }
+        }
+        return references;
+    }
+
+    private JsonValue rewriteReferences(final JsonValue value, final UnaryOperator<String> rewriter) {
+        switch (value.getValueType()) {
+        case OBJECT:
+            final JsonObjectBuilder object = builders.createObjectBuilder();
+            value.asJsonObject().forEach((key, nested) -> {
+                final String reference = toReference(key, nested);
+                if (reference == null) {
+                    object.add(key, rewriteReferences(nested, rewriter));
+                } else {
+                    object.add(key, REF_PREFIX + rewriter.apply(reference));
+                }
+            });
+            return object.build();
+        case ARRAY:
+            final List<JsonValue> items = value.asJsonArray();
+            final JsonArrayBuilder array = builders.createArrayBuilder();
+            items.forEach(item -> array.add(rewriteReferences(item, rewriter)));
+            return array.build();
+        default:
+            return value;
+        }
+    }
+
+    private static String toReference(final String key, final JsonValue value) {
+        if (REF.equals(key) && value instanceof JsonString) {
+            final String ref = ((JsonString) value).getString();
+            return ref.startsWith(REF_PREFIX) ? ref.substring(REF_PREFIX.length()) : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,704 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+/**
+ * Compares two Swagger documents (JSON, pretty or minified) and computes the RFC 6902 patch turning the previous one
+ * into the current one, with a summary of the changes breaking the existing clients.
+ *
+ * The paths and the definitions are compared entry by entry while streaming both documents: they are rendered
+ * sorted so only one entry of each document is in memory at a time. If a document is not sorted (entries added
+ * by a jsonPatch for instance) this member is compared in memory.
+ *
+ * Definitions are compared by name. A type getting another {@code _N} suffix (a type with the same simple name was
+ * added or removed) is matched by body: the definitions removed, added or changed with the same base name and the same
+ * body once the references are renamed are not reported as breaking. A renamed type which also changed is still
+ * reported as a removed definition.
+ */
+public class SwaggerDiff {
+
+    public enum ChangeType {
+        PATH_REMOVED,
+        OPERATION_REMOVED,
+        PARAMETER_TYPE_CHANGED,
+        PARAMETER_REQUIRED,
+        DEFINITION_REMOVED,
+        PROPERTY_TYPE_CHANGED
+    }
+
+    public static class BreakingChange {
+
+        private final ChangeType type;
+
+        private final String pointer;
+
+        private final String description;
+
+        private final JsonBuilderFactory builders;
+
+        private BreakingChange(final ChangeType type, final String pointer, final String description,
+                final JsonBuilderFactory builders) {
+            this.type = type;
+            this.pointer = pointer;
+            this.description = description;
+            this.builders = builders;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        /**
+         * @return the JSON pointer of the changed element in the previous document, or in the current document
+         *         for a required parameter which did not exist before.
+         */
+        public String getPointer() {
+            return pointer;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public JsonObject toJson() {
+            return builders.createObjectBuilder()
+                    .add("type", type.name())
+                    .add("pointer", pointer)
+                    .add("description", description)
+                    .build();
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + pointer + ": " + description;
+        }
+    }
+
+    private static final String PATHS = "paths";
+
+    private static final String DEFINITIONS = "definitions";
+
+    // the members compared entry by entry, the other ones are small enough to be compared in memory
+    private static final Collection<String> ENTRY_MEMBERS = asList(PATHS, DEFINITIONS);
+
+    private static final Collection<String> HTTP_METHODS = new HashSet<>(
+            asList("get", "put", "post", "delete", "options", "head", "patch"));
+
+    // what makes the type of a parameter or a property
+    private static final Collection<String> TYPE_MEMBERS = asList("type", "format", "items", "schema", "$ref");
+
+    private static final String REF_PREFIX = "#/" + DEFINITIONS + '/';
+
+    // the suffix making the definition names of the types with the same simple name unique
+    private static final Pattern NAME_SUFFIX = Pattern.compile("_\\d+$");
+
+    private final JsonArray operations;
+
+    private final List<BreakingChange> breakingChanges;
+
+    private final JsonBuilderFactory builders;
+
+    private SwaggerDiff(final JsonArray operations, final List<BreakingChange> breakingChanges,
+            final JsonBuilderFactory builders) {
+        this.operations = operations;
+        this.breakingChanges = unmodifiableList(breakingChanges);
+        this.builders = builders;
+    }
+
+    /**
+     * @return the JSON patch operations turning the previous document into the current one.
+     */
+    public JsonArray getOperations() {
+        return operations;
+    }
+
+    public List<BreakingChange> getBreakingChanges() {
+        return breakingChanges;
+    }
+
+    public boolean isBreaking() {
+        return !breakingChanges.isEmpty();
+    }
+
+    public JsonObject toJson() {
+        final JsonArrayBuilder changes = builders.createArrayBuilder();
+        breakingChanges.forEach(change -> changes.add(change.toJson()));
+        return builders.createObjectBuilder()
+                .add("patch", operations)
+                .add("breakingChanges", changes)
+                .build();
+    }
+
+    /**
+     * Renders both projects in temporary files and compares them with the JSON provider of the backend,
+     * the backend must use a JSON output format and must not be sharded.
+     *
+     * @param backend the configured backend.
+     * @param previous the reference project.
+     * @param current the new project.
+     * @return the differences between both renders.
+     */
+    public static SwaggerDiff compare(final EnrichedSwaggerBackend backend, final Project previous, final Project current) {
+        final EnrichedSwaggerBackend.SwaggerOptions backendOptions = backend.getOptions();
+        if (backendOptions.getOutputFormat() == EnrichedSwaggerBackend.SwaggerOutputFormat.CBOR) {
+            throw new IllegalArgumentException("Only JSON documents can be compared, please use another swaggerOutputFormat");
+        }
+        if (backendOptions.getShards(emptyMap()) != null) {
+            throw new IllegalArgumentException("A sharded document can't be compared, please remove swaggerShards");
+        }
+        Path previousFile = null;
+        Path currentFile = null;
+        try {
+            previousFile = Files.createTempFile("swagger-diff", ".json");
+            currentFile = Files.createTempFile("swagger-diff", ".json");
+            backend.render(previous, previousFile, false);
+            backend.render(current, currentFile, false);
+            return compare(previousFile, currentFile, backendOptions.getBuilderFactory(),
+                    backendOptions.getParserFactory());
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not render the projects to compare", e);
+        } finally {
+            delete(previousFile);
+            delete(currentFile);
+        }
+    }
+
+    /**
+     * @param previous the reference document.
+     * @param current the new document.
+     * @return the differences between both documents.
+     */
+    public static SwaggerDiff compare(final Path previous, final Path current) {
+        return compare(previous, current, JsonProvider.provider());
+    }
+
+    /**
+     * @param previous the reference document.
+     * @param current the new document.
+     * @param provider the JSON provider used to read the documents and build the result.
+     * @return the differences between both documents.
+     */
+    public static SwaggerDiff compare(final Path previous, final Path current, final JsonProvider provider) {
+        return compare(previous, current, provider.createBuilderFactory(emptyMap()),
+                provider.createParserFactory(emptyMap()));
+    }
+
+    private static SwaggerDiff compare(final Path previous, final Path current, final JsonBuilderFactory builders,
+            final JsonParserFactory parsers) {
+        final Differ differ = new Differ(builders, parsers);
+        final Header previousHeader = readHeader(parsers, previous);
+        final Header currentHeader = readHeader(parsers, current);
+
+        final Set<String> members = new LinkedHashSet<>(previousHeader.values.keySet());
+        members.addAll(currentHeader.values.keySet());
+        members.forEach(member -> differ.diffValue('/' + escape(member), previousHeader.values.get(member),
+                currentHeader.values.get(member)));
+
+        for (final String member : ENTRY_MEMBERS) {
+            final boolean inPrevious = previousHeader.entryMembers.contains(member);
+            final boolean inCurrent = currentHeader.entryMembers.contains(member);
+            if (!inPrevious && !inCurrent) {
+                continue;
+            }
+            if (!inPrevious) {
+                differ.operation("add", '/' + member, JsonValue.EMPTY_JSON_OBJECT);
+            }
+            differ.diffMember(member, previous, current);
+            if (!inCurrent) {
+                differ.operation("remove", '/' + member, null);
+            }
+        }
+
+        final JsonArrayBuilder operations = builders.createArrayBuilder();
+        differ.operations.forEach(operations::add);
+        return new SwaggerDiff(operations.build(), differ.resolveChanges(), builders);
+    }
+
+    private static Header readHeader(final JsonParserFactory parsers, final Path file) {
+        final Header header = new Header();
+        try (final JsonParser parser = openParser(parsers, file)) {
+            while (parser.next() == JsonParser.Event.KEY_NAME) {
+                final String key = parser.getString();
+                final JsonParser.Event event = parser.next();
+                if (ENTRY_MEMBERS.contains(key) && event == JsonParser.Event.START_OBJECT) {
+                    parser.skipObject();
+                    header.entryMembers.add(key);
+                } else {
+                    header.values.put(key, parser.getValue());
+                }
+            }
+        }
+        return header;
+    }
+
+    private static JsonParser openParser(final JsonParserFactory parsers, final Path file) {
+        final InputStream stream;
+        try {
+            stream = Files.newInputStream(file);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+        final JsonParser parser = parsers.createParser(stream);
+        if (!parser.hasNext() || parser.next() != JsonParser.Event.START_OBJECT) {
+            parser.close();
+            throw new IllegalArgumentException(file + " is not a JSON object");
+        }
+        return parser;
+    }
+
+    // positions the parser on the start of the member object, false if the document does not have it
+    private static boolean seek(final JsonParser parser, final String member) {
+        while (parser.next() == JsonParser.Event.KEY_NAME) {
+            final String key = parser.getString();
+            final JsonParser.Event event = parser.next();
+            if (member.equals(key) && event == JsonParser.Event.START_OBJECT) {
+                return true;
+            }
+            if (event == JsonParser.Event.START_OBJECT) {
+                parser.skipObject();
+            } else if (event == JsonParser.Event.START_ARRAY) {
+                parser.skipArray();
+            }
+        }
+        return false;
+    }
+
+    private static String escape(final String token) {
+        return token.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static JsonObject typeOf(final JsonBuilderFactory builders, final JsonObject value) {
+        final JsonObjectBuilder type = builders.createObjectBuilder();
+        TYPE_MEMBERS.stream().filter(value::containsKey).forEach(key -> type.add(key, value.get(key)));
+        return type.build();
+    }
+
+    // rewrites the references to the renamed definitions
+    private static JsonValue rename(final JsonBuilderFactory builders, final JsonValue value,
+            final Map<String, String> renames) {
+        switch (value.getValueType()) {
+        case OBJECT:
+            final JsonObjectBuilder object = builders.createObjectBuilder();
+            value.asJsonObject().forEach((key, nested) -> {
+                if ("$ref".equals(key) && nested.getValueType() == JsonValue.ValueType.STRING) {
+                    final String ref = ((JsonString) nested).getString();
+                    final String renamed = ref.startsWith(REF_PREFIX) ? renames.get(ref.substring(REF_PREFIX.length())) : null;
+                    object.add(key, renamed == null ? ref : REF_PREFIX + renamed);
+                } else {
+                    object.add(key, rename(builders, nested, renames));
+                }
+            });
+            return object.build();
+        case ARRAY:
+            final JsonArrayBuilder array = builders.createArrayBuilder();
+            value.asJsonArray().forEach(nested -> array.add(rename(builders, nested, renames)));
+            return array.build();
+        default:
+            return value;
+        }
+    }
+
+    private static String baseName(final String definition) {
+        return NAME_SUFFIX.matcher(definition).replaceFirst("");
+    }
+
+    private static Map<String, JsonObject> membersOf(final JsonValue value, final String member) {
+        if (value.getValueType() != JsonValue.ValueType.OBJECT || !value.asJsonObject().containsKey(member)
+                || value.asJsonObject().get(member).getValueType() != JsonValue.ValueType.OBJECT) {
+            return new HashMap<>();
+        }
+        final Map<String, JsonObject> members = new HashMap<>();
+        value.asJsonObject().getJsonObject(member).forEach((key, nested) -> {
+            if (nested.getValueType() == JsonValue.ValueType.OBJECT) {
+                members.put(key, nested.asJsonObject());
+            }
+        });
+        return members;
+    }
+
+    private static void delete(final Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            // temporary file, not a big deal
+        }
+    }
+
+    private static class Header {
+
+        private final Map<String, JsonValue> values = new LinkedHashMap<>();
+
+        private final Set<String> entryMembers = new HashSet<>();
+    }
+
+    private static class Differ {
+
+        private final JsonBuilderFactory builders;
+
+        private final JsonParserFactory parsers;
+
+        private final List<JsonObject> operations = new ArrayList<>();
+
+        private final List<Candidate> candidates = new ArrayList<>();
+
+        // bodies of the definitions removed, added or changed, a renamed definition is always one of them
+        private final Map<String, JsonValue> previousDefinitions = new TreeMap<>();
+
+        private final Map<String, JsonValue> currentDefinitions = new TreeMap<>();
+
+        private Differ(final JsonBuilderFactory builders, final JsonParserFactory parsers) {
+            this.builders = builders;
+            this.parsers = parsers;
+        }
+
+        private void diffMember(final String member, final Path previous, final Path current) {
+            final int operationCount = operations.size();
+            final int candidateCount = candidates.size();
+            try (final StreamedEntries previousEntries = new StreamedEntries(parsers, previous, member);
+                 final StreamedEntries currentEntries = new StreamedEntries(parsers, current, member)) {
+                diffEntries(member, previousEntries, currentEntries);
+                return;
+            } catch (final UnsortedEntriesException e) {
+                operations.subList(operationCount, operations.size()).clear();
+                candidates.subList(candidateCount, candidates.size()).clear();
+                previousDefinitions.clear();
+                currentDefinitions.clear();
+            }
+            diffEntries(member, loadEntries(previous, member), loadEntries(current, member));
+        }
+
+        private Iterator<Map.Entry<String, JsonValue>> loadEntries(final Path file, final String member) {
+            try (final JsonParser parser = openParser(parsers, file)) {
+                return seek(parser, member) ? new TreeMap<>(parser.getObject()).entrySet().iterator()
+                        : new TreeMap<String, JsonValue>().entrySet().iterator();
+            }
+        }
+
+        // merge of both sorted entry lists
+        private void diffEntries(final String member, final Iterator<Map.Entry<String, JsonValue>> previous,
+                final Iterator<Map.Entry<String, JsonValue>> current) {
+            Map.Entry<String, JsonValue> previousEntry = previous.hasNext() ? previous.next() : null;
+            Map.Entry<String, JsonValue> currentEntry = current.hasNext() ? current.next() : null;
+            while (previousEntry != null || currentEntry != null) {
+                final int comparison = previousEntry == null ? 1
+                        : currentEntry == null ? -1 : previousEntry.getKey().compareTo(currentEntry.getKey());
+                if (comparison < 0) {
+                    onRemoved(member, previousEntry.getKey());
+                    if (DEFINITIONS.equals(member)) {
+                        previousDefinitions.put(previousEntry.getKey(), previousEntry.getValue());
+                    }
+                    previousEntry = previous.hasNext() ? previous.next() : null;
+                } else if (comparison > 0) {
+                    operation("add", '/' + member + '/' + escape(currentEntry.getKey()), currentEntry.getValue());
+                    if (DEFINITIONS.equals(member)) {
+                        currentDefinitions.put(currentEntry.getKey(), currentEntry.getValue());
+                    }
+                    currentEntry = current.hasNext() ? current.next() : null;
+                } else {
+                    final String pointer = '/' + member + '/' + escape(previousEntry.getKey());
+                    if (PATHS.equals(member)) {
+                        checkPath(pointer, previousEntry.getKey(), previousEntry.getValue(), currentEntry.getValue());
+                    } else if (!previousEntry.getValue().equals(currentEntry.getValue())) {
+                        checkDefinition(pointer, previousEntry.getKey(), previousEntry.getValue(), currentEntry.getValue());
+                        previousDefinitions.put(previousEntry.getKey(), previousEntry.getValue());
+                        currentDefinitions.put(currentEntry.getKey(), currentEntry.getValue());
+                    }
+                    diffValue(pointer, previousEntry.getValue(), currentEntry.getValue());
+                    previousEntry = previous.hasNext() ? previous.next() : null;
+                    currentEntry = current.hasNext() ? current.next() : null;
+                }
+            }
+        }
+
+        private void diffValue(final String pointer, final JsonValue previous, final JsonValue current) {
+            if (previous == null) {
+                operation("add", pointer, current);
+            } else if (current == null) {
+                operation("remove", pointer, null);
+            } else if (!previous.equals(current)) {
+                // arrays are replaced, index based operations are hard to read and JSON-P diff gets them wrong
+                if (previous.getValueType() == JsonValue.ValueType.OBJECT
+                        && current.getValueType() == JsonValue.ValueType.OBJECT) {
+                    final JsonObject previousObject = previous.asJsonObject();
+                    final JsonObject currentObject = current.asJsonObject();
+                    previousObject.forEach((key, value) -> diffValue(pointer + '/' + escape(key), value,
+                            currentObject.get(key)));
+                    currentObject.forEach((key, value) -> {
+                        if (!previousObject.containsKey(key)) {
+                            operation("add", pointer + '/' + escape(key), value);
+                        }
+                    });
+                } else {
+                    operation("replace", pointer, current);
+                }
+            }
+        }
+
+        private void operation(final String op, final String pointer, final JsonValue value) {
+            final JsonObjectBuilder operation = builders.createObjectBuilder().add("op", op).add("path", pointer);
+            if (value != null) {
+                operation.add("value", value);
+            }
+            operations.add(operation.build());
+        }
+
+        private void onRemoved(final String member, final String key) {
+            final String pointer = '/' + member + '/' + escape(key);
+            operation("remove", pointer, null);
+            if (PATHS.equals(member)) {
+                candidates.add(new Candidate(new BreakingChange(ChangeType.PATH_REMOVED, pointer,
+                        "Path " + key + " was removed", builders), null, null, null));
+            } else {
+                candidates.add(new Candidate(new BreakingChange(ChangeType.DEFINITION_REMOVED, pointer,
+                        "Definition " + key + " was removed", builders), key, null, null));
+            }
+        }
+
+        private void checkPath(final String pointer, final String path, final JsonValue previous, final JsonValue current) {
+            if (previous.getValueType() != JsonValue.ValueType.OBJECT || current.getValueType() != JsonValue.ValueType.OBJECT) {
+                return;
+            }
+            previous.asJsonObject().forEach((method, operation) -> {
+                if (!HTTP_METHODS.contains(method) || operation.getValueType() != JsonValue.ValueType.OBJECT) {
+                    return;
+                }
+                final String methodPointer = pointer + '/' + method;
+                final String label = method.toUpperCase() + ' ' + path;
+                final JsonValue currentOperation = current.asJsonObject().get(method);
+                if (currentOperation == null) {
+                    candidates.add(new Candidate(new BreakingChange(ChangeType.OPERATION_REMOVED, methodPointer,
+                            label + " was removed", builders), null, null, null));
+                } else if (currentOperation.getValueType() == JsonValue.ValueType.OBJECT) {
+                    checkParameters(methodPointer, label, operation.asJsonObject(), currentOperation.asJsonObject());
+                }
+            });
+        }
+
+        private void checkParameters(final String pointer, final String label, final JsonObject previous,
+                final JsonObject current) {
+            final Map<String, JsonObject> previousParameters = new HashMap<>();
+            final JsonArray previousArray = previous.containsKey("parameters") ? previous.getJsonArray("parameters")
+                    : JsonValue.EMPTY_JSON_ARRAY;
+            previousArray.getValuesAs(JsonObject.class)
+                    .forEach(p -> previousParameters.put(p.getString("in", "") + ':' + p.getString("name", ""), p));
+
+            final JsonArray currentArray = current.containsKey("parameters") ? current.getJsonArray("parameters")
+                    : JsonValue.EMPTY_JSON_ARRAY;
+            for (int i = 0; i < currentArray.size(); i++) {
+                final JsonObject parameter = currentArray.getJsonObject(i);
+                final String name = parameter.getString("name", "");
+                final String in = parameter.getString("in", "");
+                final JsonObject old = previousParameters.get(in + ':' + name);
+                // a new parameter is only in the current document
+                final String parameterPointer = pointer + "/parameters/" + (old == null ? i : previousArray.indexOf(old));
+                if (parameter.getBoolean("required", false) && (old == null || !old.getBoolean("required", false))) {
+                    candidates.add(new Candidate(new BreakingChange(ChangeType.PARAMETER_REQUIRED, parameterPointer,
+                            "Parameter " + name + " (" + in + ") of " + label + " is now required", builders),
+                            null, null, null));
+                }
+                final JsonObject previousType = old == null ? null : typeOf(builders, old);
+                final JsonObject currentType = typeOf(builders, parameter);
+                if (previousType != null && !previousType.equals(currentType)) {
+                    candidates.add(new Candidate(new BreakingChange(ChangeType.PARAMETER_TYPE_CHANGED, parameterPointer,
+                            "Parameter " + name + " (" + in + ") of " + label + " changed from " + previousType
+                                    + " to " + currentType, builders), null, previousType, currentType));
+                }
+            }
+        }
+
+        private void checkDefinition(final String pointer, final String definition, final JsonValue previous,
+                final JsonValue current) {
+            final Map<String, JsonObject> currentProperties = membersOf(current, "properties");
+            membersOf(previous, "properties").entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(property -> {
+                final JsonObject currentProperty = currentProperties.get(property.getKey());
+                if (currentProperty == null) {
+                    return;
+                }
+                final JsonObject previousType = typeOf(builders, property.getValue());
+                final JsonObject currentType = typeOf(builders, currentProperty);
+                if (!previousType.equals(currentType)) {
+                    candidates.add(new Candidate(new BreakingChange(ChangeType.PROPERTY_TYPE_CHANGED,
+                            pointer + "/properties/" + escape(property.getKey()),
+                            "Property " + property.getKey() + " of " + definition + " changed from "
+                                    + previousType + " to " + currentType, builders),
+                            definition, previousType, currentType));
+                }
+            });
+        }
+
+        // drops the changes only due to definitions renamed by a _N suffix shift
+        private List<BreakingChange> resolveChanges() {
+            final Map<String, String> renames = findRenames();
+            final Set<String> targets = new HashSet<>(renames.values());
+            final List<BreakingChange> changes = new ArrayList<>();
+            for (final Candidate candidate : candidates) {
+                if (candidate.definition != null && (renames.containsKey(candidate.definition)
+                        || (candidate.change.type == ChangeType.PROPERTY_TYPE_CHANGED && targets.contains(candidate.definition)))) {
+                    continue;
+                }
+                if (candidate.previousType != null
+                        && rename(builders, candidate.previousType, renames).equals(candidate.currentType)) {
+                    continue;
+                }
+                changes.add(candidate.change);
+            }
+            // the name is now the one of another type and the previous type was not found under another name
+            targets.stream()
+                    .filter(name -> previousDefinitions.containsKey(name) && !renames.containsKey(name))
+                    .sorted()
+                    .forEach(name -> changes.add(new BreakingChange(ChangeType.DEFINITION_REMOVED,
+                            '/' + DEFINITIONS + '/' + escape(name),
+                            "Definition " + name + " was removed, the name is now used by another type", builders)));
+            return changes;
+        }
+
+        // previous definition name -> current one, the references to the renamed definitions are renamed before
+        // comparing the bodies so the matches are searched until no new one is found
+        private Map<String, String> findRenames() {
+            final Map<String, String> renames = new HashMap<>();
+            final Set<String> targets = new HashSet<>();
+            boolean found = true;
+            while (found) {
+                found = false;
+                for (final Map.Entry<String, JsonValue> previous : previousDefinitions.entrySet()) {
+                    if (renames.containsKey(previous.getKey())) {
+                        continue;
+                    }
+                    final String base = baseName(previous.getKey());
+                    for (final Map.Entry<String, JsonValue> current : currentDefinitions.entrySet()) {
+                        if (current.getKey().equals(previous.getKey()) || targets.contains(current.getKey())
+                                || !base.equals(baseName(current.getKey()))) {
+                            continue;
+                        }
+                        renames.put(previous.getKey(), current.getKey()); // self references
+                        if (rename(builders, previous.getValue(), renames).equals(current.getValue())) {
+                            targets.add(current.getKey());
+                            found = true;
+                            break;
+                        }
+                        renames.remove(previous.getKey());
+                    }
+                }
+            }
+            return renames;
+        }
+    }
+
+    private static class Candidate {
+
+        private final BreakingChange change;
+
+        // the definition the change is about, null for the changes of the paths
+        private final String definition;
+
+        // the compared types of a type change
+        private final JsonObject previousType;
+
+        private final JsonObject currentType;
+
+        private Candidate(final BreakingChange change, final String definition, final JsonObject previousType,
+                final JsonObject currentType) {
+            this.change = change;
+            this.definition = definition;
+            this.previousType = previousType;
+            this.currentType = currentType;
+        }
+    }
+
+    private static class UnsortedEntriesException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private UnsortedEntriesException() {
+            super(null, null, false, false);
+        }
+    }
+
+    // reads the entries of a member one by one, fails if they are not sorted
+    private static class StreamedEntries implements Iterator<Map.Entry<String, JsonValue>>, AutoCloseable {
+
+        private final JsonParser parser;
+
+        private boolean open;
+
+        private Map.Entry<String, JsonValue> next;
+
+        private String lastKey;
+
+        private StreamedEntries(final JsonParserFactory parsers, final Path file, final String member) {
+            this.parser = openParser(parsers, file);
+            this.open = seek(parser, member);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && open) {
+                if (parser.next() != JsonParser.Event.KEY_NAME) {
+                    open = false;
+                    return false;
+                }
+                final String key = parser.getString();
+                parser.next();
+                if (lastKey != null && lastKey.compareTo(key) >= 0) {
+                    throw new UnsortedEntriesException();
+                }
+                lastKey = key;
+                next = new AbstractMap.SimpleImmutableEntry<>(key, parser.getValue());
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, JsonValue> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<String, JsonValue> entry = next;
+            next = null;
+            return entry;
+        }
+
+        @Override
+        public void close() {
+            parser.close();
+        }
+    }
+}
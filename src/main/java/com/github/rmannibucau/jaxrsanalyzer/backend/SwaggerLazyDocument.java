@@ -0,0 +1,134 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.json.JsonValue;
+
+/**
+ * A Swagger document of an analyzed project rendered on demand, path per path and definition per definition,
+ * for a documentation server for instance. The rendered fragments are kept in a LRU cache bounded by their size
+ * so the memory follows what is viewed and not the size of the API.
+ *
+ * The definition names are assigned upfront in the order of the whole document so the $ref are consistent between
+ * the fragments and with a render of the project whatever the order the fragments are requested in. Besides these
+ * names and the LRU cache nothing is kept: each fragment builds its schemas alone, a definition only builds itself
+ * (the types it references are only named) and is expanded from itself with swaggerMaxDepth, so a fragment can have
+ * more or less levels than the whole document. Fragments are rendered concurrently, the whole document is rendered
+ * by one caller at a time.
+ *
+ * Fragments are serialized with the configured output format and the jsonPatch operations targeting a single
+ * entry are applied to them.
+ */
+public class SwaggerLazyDocument {
+
+    // implemented by the backend renderer
+    interface Source {
+
+        Collection<String> getPaths();
+
+        JsonValue renderPathFragment(String path);
+
+        JsonValue renderDefinitionFragment(String name);
+
+        byte[] toBytes(JsonValue value);
+
+        // the output is closed
+        void renderDocument(OutputStream output);
+    }
+
+    private static final String PATH_PREFIX = "paths:";
+
+    private static final String DEFINITION_PREFIX = "definitions:";
+
+    private final Source source;
+
+    private final long maxCacheSize;
+
+    // access ordered
+    private final Map<String, byte[]> cache = new LinkedHashMap<>(16, .75f, true);
+
+    private long cacheSize;
+
+    SwaggerLazyDocument(final Source source, final long maxCacheSize) {
+        this.source = source;
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * @return the paths of the document, a path removed by the jsonPatch is listed but has no fragment.
+     */
+    public Collection<String> getPaths() {
+        return source.getPaths();
+    }
+
+    /**
+     * @param path the path as in the document (/users/{id}).
+     * @return a copy of the serialized path or null if the document does not have it.
+     */
+    public byte[] getPath(final String path) {
+        return get(PATH_PREFIX + path, () -> source.renderPathFragment(path));
+    }
+
+    /**
+     * @param name the definition name as in the $ref.
+     * @return a copy of the serialized definition or null if the document does not have it.
+     */
+    public byte[] getDefinition(final String name) {
+        return get(DEFINITION_PREFIX + name, () -> source.renderDefinitionFragment(name));
+    }
+
+    /**
+     * Renders the whole document, it is not cached.
+     *
+     * @param output where to write the document, it is closed.
+     */
+    public void render(final OutputStream output) {
+        synchronized (source) {
+            source.renderDocument(output);
+        }
+    }
+
+    /**
+     * @return the size in bytes of the cached fragments.
+     */
+    public long getCacheSize() {
+        synchronized (cache) {
+            return cacheSize;
+        }
+    }
+
+    // the cached arrays are never returned, a caller modifying its fragment would corrupt the next reads
+    private byte[] get(final String key, final Supplier<JsonValue> renderer) {
+        synchronized (cache) {
+            final byte[] cached = cache.get(key);
+            if (cached != null) {
+                return cached.clone();
+            }
+        }
+
+        final JsonValue value = renderer.get();
+        if (value == null) {
+            return null;
+        }
+        final byte[] bytes = source.toBytes(value);
+        if (bytes.length > maxCacheSize) {
+            return bytes;
+        }
+
+        synchronized (cache) {
+            final byte[] previous = cache.put(key, bytes);
+            cacheSize += bytes.length - (previous == null ? 0 : previous.length);
+            final Iterator<byte[]> eldest = cache.values().iterator();
+            while (cacheSize > maxCacheSize) {
+                cacheSize -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+        return bytes.clone();
+    }
+}
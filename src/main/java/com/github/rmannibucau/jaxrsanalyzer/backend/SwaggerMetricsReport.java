@@ -0,0 +1,58 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import com.sebastian_daschner.jaxrs_analyzer.LogProvider;
+
+// writes the metrics of the last render as JSON, enabled with the swaggerMetricsReport option
+class SwaggerMetricsReport implements SwaggerRenderListener {
+
+    private final Path report;
+
+    private final JsonGeneratorFactory generators;
+
+    SwaggerMetricsReport(final Path report, final JsonGeneratorFactory generators) {
+        this.report = report;
+        this.generators = generators;
+    }
+
+    Path getReport() {
+        return report;
+    }
+
+    @Override
+    public void onRender(final SwaggerRenderMetrics metrics) {
+        try {
+            final Path parent = report.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // written aside and moved in place so a tool reading the report never sees a partial one
+            final Path temp = Files.createTempFile(parent, report.getFileName().toString(), ".tmp");
+            try {
+                try (final OutputStream stream = Files.newOutputStream(temp);
+                     final JsonGenerator generator = generators.createGenerator(stream)) {
+                    generator.write(metrics.toJson());
+                }
+                try {
+                    Files.move(temp, report, ATOMIC_MOVE, REPLACE_EXISTING);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(temp, report, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) { // a report must not fail the build
+            LogProvider.error("Could not write Swagger metrics report to " + report + ", reason: " + e.getMessage());
+            LogProvider.debug(e);
+        }
+    }
+}
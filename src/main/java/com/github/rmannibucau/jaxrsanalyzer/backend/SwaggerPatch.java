@@ -0,0 +1,292 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonPatch;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+
+/**
+ * The merged and compiled form of the jsonPatch option.
+ *
+ * Operations only touching a single entry of /paths or /definitions, or a header member, are grouped per entry
+ * so they can be applied on the fragments while streaming. If any operation spans several entries
+ * the whole document must be patched as a tree. It is also the case if an operation moves an entry: JSON-P appends
+ * an added member to its object, so an entry removed then added again, or the tags member which is only rendered
+ * with renderTags, ends up after the entries the streaming already wrote.
+ */
+class SwaggerPatch {
+
+    private static final String PATHS = "paths";
+
+    private static final String DEFINITIONS = "definitions";
+
+    private static final String TAGS = "tags";
+
+    private static final Collection<String> HEADER_MEMBERS = new HashSet<>(
+            asList("swagger", "info", "host", "basePath", "schemes", "tags"));
+
+    private final JsonArray operations;
+
+    private final JsonProvider provider;
+
+    private final JsonBuilderFactory builders;
+
+    private final JsonPatch patch;
+
+    private final boolean streamable;
+
+    private final JsonPatch headerPatch;
+
+    private final Map<String, JsonPatch> pathPatches;
+
+    private final Map<String, JsonPatch> definitionPatches;
+
+    private SwaggerPatch(final JsonArray operations, final JsonProvider provider, final JsonBuilderFactory builders) {
+        this.operations = operations;
+        this.provider = provider;
+        this.builders = builders;
+        this.patch = provider.createPatch(operations);
+
+        final JsonArrayBuilder header = builders.createArrayBuilder();
+        final Map<String, JsonArrayBuilder> paths = new LinkedHashMap<>();
+        final Map<String, JsonArrayBuilder> definitions = new LinkedHashMap<>();
+        final Collection<List<String>> removed = new HashSet<>();
+        boolean hasHeader = false;
+        boolean scoped = true;
+        for (final JsonValue value : operations) {
+            final JsonObject operation = value.asJsonObject();
+            final String op = operation.getString("op");
+            final List<String> path = parsePointer(operation.getString("path"));
+            final List<String> from = operation.containsKey("from") ? parsePointer(operation.getString("from")) : path;
+            if (path.isEmpty() || from.isEmpty() || !path.get(0).equals(from.get(0))) {
+                scoped = false;
+                break;
+            }
+
+            final String member = path.get(0);
+            if (HEADER_MEMBERS.contains(member)) {
+                if (movesEntry(op, path, from, 1, removed) || TAGS.equals(member) && path.size() == 1 && isAdder(op)) {
+                    scoped = false;
+                    break;
+                }
+                header.add(operation);
+                hasHeader = true;
+            } else if ((PATHS.equals(member) || DEFINITIONS.equals(member)) && path.size() > 1 && from.size() > 1
+                    && path.get(1).equals(from.get(1))) {
+                if (movesEntry(op, path, from, 2, removed)) {
+                    scoped = false;
+                    break;
+                }
+                // rebase on a {entry: value} wrapper
+                final JsonObject relative = rebase(operation);
+                (PATHS.equals(member) ? paths : definitions).computeIfAbsent(path.get(1), k -> builders.createArrayBuilder())
+                        .add(relative);
+            } else {
+                scoped = false;
+                break;
+            }
+        }
+
+        this.streamable = scoped;
+        this.headerPatch = scoped && hasHeader ? provider.createPatch(header.build()) : null;
+        this.pathPatches = scoped ? compile(paths) : null;
+        this.definitionPatches = scoped ? compile(definitions) : null;
+    }
+
+    JsonArray getOperations() {
+        return operations;
+    }
+
+    boolean isStreamable() {
+        return streamable;
+    }
+
+    /**
+     * @return the patch to apply on the header members (swagger, info, host, basePath, schemes, tags), can be null.
+     */
+    JsonPatch getHeaderPatch() {
+        return headerPatch;
+    }
+
+    /**
+     * @return the patches to apply on a {path: value} object, keyed by path.
+     */
+    Map<String, JsonPatch> getPathPatches() {
+        return pathPatches;
+    }
+
+    /**
+     * @return the patches to apply on a {definition: value} object, keyed by definition name.
+     */
+    Map<String, JsonPatch> getDefinitionPatches() {
+        return definitionPatches;
+    }
+
+    JsonObject apply(final JsonObject json) {
+        return patch.apply(json);
+    }
+
+    // applies a patch grouped per entry, the result is empty if the patch removed the entry
+    JsonObject applyToEntry(final JsonPatch entryPatch, final String key, final JsonValue value) {
+        return entryPatch.apply(value == null ? JsonValue.EMPTY_JSON_OBJECT
+                : builders.createObjectBuilder().add(key, value).build());
+    }
+
+    /**
+     * @param locations comma separated list of patch files or directories (their *.json files are used, sorted by name).
+     * @param provider the provider compiling the patches.
+     * @param builders the factory of the builders used to compile and apply the patches.
+     * @param readers the factory of the readers of the patch files.
+     * @return the merged patch.
+     * @throws IOException if a location can't be read.
+     */
+    static SwaggerPatch read(final String locations, final JsonProvider provider, final JsonBuilderFactory builders,
+            final JsonReaderFactory readers) throws IOException {
+        final List<JsonObject> operations = new ArrayList<>();
+        for (final String location : locations.split(",")) {
+            final Path path = Paths.get(location.trim());
+            final List<Path> files;
+            if (Files.isDirectory(path)) {
+                try (final Stream<Path> children = Files.list(path)) {
+                    files = children.filter(p -> p.getFileName().toString().endsWith(".json")).sorted().collect(toList());
+                }
+            } else {
+                files = asList(path);
+            }
+            for (final Path file : files) {
+                try (final Reader reader = Files.newBufferedReader(file, UTF_8);
+                     final JsonReader jsonReader = readers.createReader(reader)) {
+                    jsonReader.readArray().forEach(v -> operations.add(v.asJsonObject()));
+                }
+            }
+        }
+        final JsonArrayBuilder optimized = builders.createArrayBuilder();
+        optimize(operations, builders).forEach(optimized::add);
+        return new SwaggerPatch(optimized.build(), provider, builders);
+    }
+
+    /**
+     * Merges an add/replace with a previous add/replace of the same pointer if nothing in between reads or
+     * writes this pointer, its parents or children. Pointers which can be array indices are never merged
+     * since adding in an array inserts instead of replacing.
+     */
+    static List<JsonObject> optimize(final List<JsonObject> operations, final JsonBuilderFactory builders) {
+        final List<JsonObject> result = new ArrayList<>(operations.size());
+        for (final JsonObject operation : operations) {
+            final String op = operation.getString("op");
+            final List<String> path = parsePointer(operation.getString("path"));
+            if (isSetter(op) && isMergeable(path)) {
+                int index = result.size() - 1;
+                for (; index >= 0; index--) {
+                    final JsonObject previous = result.get(index);
+                    final List<String> previousPath = parsePointer(previous.getString("path"));
+                    if (previousPath.equals(path) && isSetter(previous.getString("op"))) {
+                        break;
+                    }
+                    if (isRelated(previousPath, path) || previous.containsKey("from")
+                            && isRelated(parsePointer(previous.getString("from")), path)) {
+                        index = -1;
+                        break;
+                    }
+                }
+                if (index >= 0) { // keep the first operation (existence check of replace), with the last value
+                    result.set(index, builders.createObjectBuilder(result.get(index))
+                            .add("value", operation.get("value"))
+                            .build());
+                    continue;
+                }
+            }
+            result.add(operation);
+        }
+        return result;
+    }
+
+    private Map<String, JsonPatch> compile(final Map<String, JsonArrayBuilder> operations) {
+        final Map<String, JsonPatch> patches = new LinkedHashMap<>();
+        operations.forEach((key, value) -> patches.put(key, provider.createPatch(value.build())));
+        return patches;
+    }
+
+    private JsonObject rebase(final JsonObject operation) {
+        final String path = operation.getString("path");
+        final JsonObject relative = builders.createObjectBuilder(operation)
+                .add("path", path.substring(path.indexOf('/', 1)))
+                .build();
+        if (!operation.containsKey("from")) {
+            return relative;
+        }
+        final String from = operation.getString("from");
+        return builders.createObjectBuilder(relative).add("from", from.substring(from.indexOf('/', 1))).build();
+    }
+
+    // tracks the entries (pointers of the given depth) this patch removes, true if one of them is added again
+    private static boolean movesEntry(final String op, final List<String> path, final List<String> from, final int depth,
+            final Collection<List<String>> removed) {
+        if ("remove".equals(op) && path.size() == depth || "move".equals(op) && from.size() == depth) {
+            removed.add(from.subList(0, depth));
+        }
+        return isAdder(op) && path.size() == depth && removed.contains(path);
+    }
+
+    private static boolean isAdder(final String op) {
+        return "add".equals(op) || "copy".equals(op) || "move".equals(op);
+    }
+
+    private static boolean isSetter(final String op) {
+        return "add".equals(op) || "replace".equals(op);
+    }
+
+    private static boolean isMergeable(final List<String> path) {
+        return !path.isEmpty() && path.stream().noneMatch(token -> "-".equals(token) || isIndex(token));
+    }
+
+    private static boolean isIndex(final String token) {
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRelated(final List<String> path1, final List<String> path2) {
+        final int length = Math.min(path1.size(), path2.size());
+        return path1.subList(0, length).equals(path2.subList(0, length));
+    }
+
+    static List<String> parsePointer(final String pointer) {
+        if (pointer.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final List<String> tokens = new ArrayList<>();
+        for (final String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+}
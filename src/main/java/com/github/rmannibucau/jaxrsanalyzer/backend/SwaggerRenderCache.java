@@ -0,0 +1,434 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.sebastian_daschner.jaxrs_analyzer.backend.ComparatorUtils.mapKeyComparator;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.comparing;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import com.sebastian_daschner.jaxrs_analyzer.LogProvider;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeIdentifier;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeRepresentation;
+
+// keeps the rendered paths between two renders to only rebuild the ones which changed;
+// the index holds the minified fragment of each path, not offsets in the output since the patch, the compaction and
+// the output format change its bytes, so it is about a third of the output; definitions are always rebuilt.
+// A directory can be shared by concurrent renders: each project (name, version, options) has its own index,
+// files are written aside and atomically moved in place, and an output is never modified once published
+class SwaggerRenderCache {
+
+    private static final String INDEX_PREFIX = "swagger-cache-";
+
+    private static final String OUTPUT_PREFIX = "swagger-output-";
+
+    private static final String TEMP_PREFIX = "swagger-tmp-";
+
+    private static final int VERSION = 2;
+
+    private final Path directory;
+
+    private final String optionsSignature;
+
+    private final JsonBuilderFactory builders;
+
+    private final JsonReaderFactory readers;
+
+    private final JsonGeneratorFactory generators;
+
+    private final Map<String, String> pathKeys = new HashMap<>();
+
+    private final Map<String, JsonObject> renderedPaths = new ConcurrentHashMap<>();
+
+    private JsonObject previousPaths = JsonValue.EMPTY_JSON_OBJECT;
+
+    private String key;
+
+    // the index and outputs of the project
+    private String slot;
+
+    private String fingerprint;
+
+    private Path capturedOutput;
+
+    private volatile boolean captureFailed;
+
+    SwaggerRenderCache(final Path directory, final String optionsSignature, final JsonBuilderFactory builders,
+            final JsonReaderFactory readers, final JsonGeneratorFactory generators) {
+        this.directory = directory;
+        this.optionsSignature = optionsSignature;
+        this.builders = builders;
+        this.readers = readers;
+        this.generators = generators;
+    }
+
+    /**
+     * @param project the project to render.
+     * @param sortedResources the resources of the project in rendering order.
+     * @return the previous output if nothing changed since the last render, null otherwise.
+     */
+    InputStream findOutput(final Project project, final SortedResources sortedResources) {
+        final Resources resources = project.getResources();
+        final Hasher global = new Hasher().add(optionsSignature).add(project.getName()).add(project.getVersion())
+                .add(resources.getBasePath());
+        sortedResources.getPaths().forEach(path -> {
+            final String pathKey = computePathKey(path, sortedResources.getMethods(path));
+            pathKeys.put(path, pathKey);
+            global.add(path).add(pathKey);
+        });
+        resources.getTypeRepresentations().values().stream().sorted(comparing(r -> r.getIdentifier().getName()))
+                .forEach(r -> addTypeRepresentation(global, r));
+        key = global.toString();
+        slot = new Hasher().add(optionsSignature).add(project.getName()).add(project.getVersion()).toString()
+                .substring(0, 16);
+
+        final Path index = getIndex();
+        if (!Files.exists(index)) {
+            return null;
+        }
+        try (final JsonReader reader = readers.createReader(Files.newBufferedReader(index, UTF_8))) {
+            final JsonObject cache = reader.readObject();
+            if (cache.getInt("version", 0) != VERSION) {
+                return null;
+            }
+            previousPaths = cache.getJsonObject("paths");
+
+            final String output = cache.getString("output", null);
+            if (key.equals(cache.getString("key", null)) && output != null) {
+                // opened now so a concurrent render replacing it can't change what is read
+                final InputStream stream = Files.newInputStream(directory.resolve(output));
+                fingerprint = cache.getString("fingerprint", null);
+                return stream;
+            }
+        } catch (final NoSuchFileException e) { // replaced by a concurrent render since the index was read
+            LogProvider.debug(e);
+        } catch (final Exception e) { // the cache is an optimization, never fail the build because of it
+            LogProvider.error("Could not read Swagger cache from " + directory + ", reason: " + e.getMessage());
+            LogProvider.debug(e);
+            previousPaths = JsonValue.EMPTY_JSON_OBJECT;
+        }
+        return null;
+    }
+
+    /**
+     * @return the fingerprint of the output found by {@link #findOutput(Project, SortedResources)}, if it had one.
+     */
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Looks up a path rendered by a previous execution. Since the definition names depend on the order types
+     * are met, the schemas the path used are resolved again (it also registers the definitions) and the
+     * fragment is only reused if they did not change.
+     *
+     * @param path the resource path.
+     * @param methods the methods of this path, used to resolve the identifiers of the cached schemas.
+     * @param schemas the schema resolver of the current render.
+     * @return the cached fragment or null if the path must be rendered.
+     */
+    JsonObject findPath(final String path, final Collection<ResourceMethod> methods,
+            final Function<TypeIdentifier, JsonObject> schemas) {
+        final JsonObject cached = previousPaths.getJsonObject(path);
+        if (cached == null || !Objects.equals(pathKeys.get(path), cached.getString("key", null))) {
+            return null;
+        }
+
+        final Map<String, TypeIdentifier> identifiers = new HashMap<>();
+        methods.forEach(m -> {
+            m.getMethodParameters().forEach(p -> identifiers.put(p.getType().getName(), p.getType()));
+            if (m.getRequestBody() != null) {
+                identifiers.put(m.getRequestBody().getName(), m.getRequestBody());
+            }
+            m.getResponses().values().stream().filter(r -> r.getResponseBody() != null)
+                    .forEach(r -> identifiers.put(r.getResponseBody().getName(), r.getResponseBody()));
+        });
+
+        for (final JsonValue value : cached.getJsonArray("schemas")) {
+            final JsonObject schema = value.asJsonObject();
+            final TypeIdentifier identifier = identifiers.get(schema.getString("type"));
+            if (identifier == null || !schemas.apply(identifier).equals(schema.getJsonObject("schema"))) {
+                return null;
+            }
+        }
+
+        final JsonObject fragment = cached.getJsonObject("fragment");
+        renderedPaths.put(path, cached);
+        return fragment;
+    }
+
+    /**
+     * @param path the resource path.
+     * @param fragment the rendered path.
+     * @param schemas the schemas the path used, in resolution order (insertion ordered map).
+     */
+    void putPath(final String path, final JsonObject fragment, final Map<TypeIdentifier, JsonObject> schemas) {
+        final JsonArrayBuilder usedSchemas = builders.createArrayBuilder();
+        schemas.forEach((type, schema) -> usedSchemas.add(builders.createObjectBuilder()
+                .add("type", type.getName())
+                .add("schema", schema)));
+        renderedPaths.put(path, builders.createObjectBuilder()
+                .add("key", pathKeys.get(path))
+                .add("schemas", usedSchemas)
+                .add("fragment", fragment)
+                .build());
+    }
+
+    /**
+     * @param output where the render is written.
+     * @return a stream writing to the output and to the cache, if the cache can't be written only the output is.
+     */
+    OutputStream capture(final OutputStream output) {
+        try {
+            Files.createDirectories(directory);
+            // only published by store() so a failing or concurrent render never exposes a partial output
+            capturedOutput = Files.createTempFile(directory, TEMP_PREFIX, ".tmp");
+            return new CapturingOutputStream(output, new BufferedOutputStream(Files.newOutputStream(capturedOutput)));
+        } catch (final IOException e) {
+            LogProvider.error("Could not write Swagger cache to " + directory + ", reason: " + e.getMessage());
+            LogProvider.debug(e);
+            captureFailed = true;
+            return output;
+        }
+    }
+
+    // to call once the captured output is closed
+    void store(final String outputFingerprint) {
+        if (captureFailed || capturedOutput == null) {
+            return;
+        }
+        // the same key always leads to the same output so it can be replaced while being read
+        final String output = OUTPUT_PREFIX + slot + '-' + key.substring(0, 16);
+        Path index = null;
+        try {
+            publish(capturedOutput, directory.resolve(output));
+            capturedOutput = null;
+
+            index = Files.createTempFile(directory, TEMP_PREFIX, ".tmp");
+            try (final OutputStream stream = Files.newOutputStream(index);
+                 final JsonGenerator generator = generators.createGenerator(stream)) {
+                generator.writeStartObject().write("version", VERSION).write("key", key).write("output", output);
+                if (outputFingerprint != null) {
+                    generator.write("fingerprint", outputFingerprint);
+                }
+                generator.writeStartObject("paths");
+                renderedPaths.entrySet().stream().sorted(mapKeyComparator())
+                        .forEach(e -> generator.write(e.getKey(), e.getValue()));
+                generator.writeEnd().writeEnd();
+            }
+            publish(index, getIndex());
+            index = null;
+
+            deleteOutputs(output);
+        } catch (final IOException e) {
+            LogProvider.error("Could not write Swagger cache to " + directory + ", reason: " + e.getMessage());
+            LogProvider.debug(e);
+        } finally {
+            if (index != null) {
+                deleteQuietly(index);
+            }
+        }
+    }
+
+    // to call after the render, drops the captured output if it was not stored
+    void release() {
+        if (capturedOutput != null) {
+            deleteQuietly(capturedOutput);
+            capturedOutput = null;
+        }
+    }
+
+    private Path getIndex() {
+        return directory.resolve(INDEX_PREFIX + slot + ".json");
+    }
+
+    private static void publish(final Path temp, final Path target) throws IOException {
+        Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    // the previous outputs of the project, a render still reading one already opened it
+    private void deleteOutputs(final String current) {
+        try (final DirectoryStream<Path> outputs = Files.newDirectoryStream(directory, OUTPUT_PREFIX + slot + "-*")) {
+            for (final Path output : outputs) {
+                if (!current.equals(output.getFileName().toString())) {
+                    deleteQuietly(output);
+                }
+            }
+        } catch (final IOException e) {
+            LogProvider.debug(e);
+        }
+    }
+
+    private static void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException e) { // can be opened on some systems, a next render will retry
+            LogProvider.debug(e);
+        }
+    }
+
+    private String computePathKey(final String path, final List<ResourceMethod> methods) {
+        final Hasher hasher = new Hasher().add(optionsSignature).add(path);
+        methods.forEach(m -> {
+            hasher.add(m.getMethod().name()).add(m.getDescription()).add(Boolean.toString(m.isDeprecated()));
+            m.getRequestMediaTypes().stream().sorted().forEach(hasher::add);
+            hasher.add("|");
+            m.getResponseMediaTypes().stream().sorted().forEach(hasher::add);
+            hasher.add("|");
+            m.getMethodParameters().stream()
+                    .map(p -> p.getParameterType() + ":" + p.getName() + ":" + p.getType().getName() + ":"
+                            + p.getDescription() + ":" + p.getDefaultValue())
+                    .sorted().forEach(hasher::add);
+            hasher.add("|");
+            hasher.add(m.getRequestBody() == null ? null : m.getRequestBody().getName()).add(m.getRequestBodyDescription());
+            m.getResponses().entrySet().stream().sorted(mapKeyComparator()).forEach(r -> {
+                hasher.add(r.getKey().toString());
+                r.getValue().getHeaders().stream().sorted().forEach(hasher::add);
+                hasher.add(r.getValue().getResponseBody() == null ? null : r.getValue().getResponseBody().getName());
+            });
+        });
+        return hasher.toString();
+    }
+
+    private static void addTypeRepresentation(final Hasher hasher, final TypeRepresentation representation) {
+        hasher.add(representation.getIdentifier().getName());
+        if (representation instanceof TypeRepresentation.ConcreteTypeRepresentation) {
+            hasher.add("concrete");
+            ((TypeRepresentation.ConcreteTypeRepresentation) representation).getProperties().entrySet().stream()
+                    .sorted(mapKeyComparator())
+                    .forEach(e -> hasher.add(e.getKey()).add(e.getValue().getName()));
+        } else if (representation instanceof TypeRepresentation.CollectionTypeRepresentation) {
+            hasher.add("collection").add(((TypeRepresentation.CollectionTypeRepresentation) representation)
+                    .getRepresentation().getIdentifier().getName());
+        } else if (representation instanceof TypeRepresentation.EnumTypeRepresentation) {
+            hasher.add("enum");
+            ((TypeRepresentation.EnumTypeRepresentation) representation).getEnumValues().stream().sorted()
+                    .forEach(hasher::add);
+        }
+    }
+
+    private class CapturingOutputStream extends FilterOutputStream {
+
+        private OutputStream cache;
+
+        private CapturingOutputStream(final OutputStream output, final OutputStream cache) {
+            super(output);
+            this.cache = cache;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            if (cache != null) {
+                try {
+                    cache.write(b);
+                } catch (final IOException e) {
+                    onCacheError(e);
+                }
+            }
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+            if (cache != null) {
+                try {
+                    cache.write(bytes, offset, length);
+                } catch (final IOException e) {
+                    onCacheError(e);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (cache != null) {
+                    try {
+                        cache.close();
+                    } catch (final IOException e) {
+                        onCacheError(e);
+                    }
+                    cache = null;
+                }
+            }
+        }
+
+        // the cache is an optimization, never fail the render because of it
+        private void onCacheError(final IOException e) {
+            LogProvider.error("Could not write Swagger cache to " + directory + ", reason: " + e.getMessage());
+            LogProvider.debug(e);
+            captureFailed = true;
+            try {
+                cache.close();
+            } catch (final IOException ignored) {
+                // already failing
+            }
+            cache = null;
+        }
+    }
+
+    private static class Hasher {
+
+        private final MessageDigest digest;
+
+        private Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Hasher add(final String value) {
+            if (value == null) {
+                digest.update((byte) 1);
+            } else {
+                digest.update(value.getBytes(UTF_8));
+            }
+            digest.update((byte) 0);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        }
+    }
+}
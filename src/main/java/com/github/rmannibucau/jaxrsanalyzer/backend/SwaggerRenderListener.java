@@ -0,0 +1,18 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+/**
+ * Notified after each render of {@link EnrichedSwaggerBackend}.
+ *
+ * Implementations can be registered with {@link EnrichedSwaggerBackend#addRenderListener(SwaggerRenderListener)}
+ * or through the {@link java.util.ServiceLoader} mechanism
+ * (META-INF/services/com.github.rmannibucau.jaxrsanalyzer.backend.SwaggerRenderListener).
+ * An exception thrown by a listener is logged and does not fail the render.
+ */
+@FunctionalInterface
+public interface SwaggerRenderListener {
+
+    /**
+     * @param metrics what the render did and how long it took.
+     */
+    void onRender(SwaggerRenderMetrics metrics);
+}
@@ -0,0 +1,228 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.util.Locale.ROOT;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Timings and counters of a Swagger render.
+ *
+ * Phase durations are exclusive: when the output is streamed, writing the header, the paths or the definitions
+ * is accounted in the corresponding phase and serialization only covers what remains (generator setup,
+ * x-restlet sections, closing).
+ */
+public class SwaggerRenderMetrics {
+
+    public enum Phase {
+        HEADER,
+        PATHS,
+        DEFINITIONS,
+        PATCH,
+        SERIALIZATION
+    }
+
+    private final String projectName;
+
+    private final String projectVersion;
+
+    private final JsonBuilderFactory builders;
+
+    private final Map<Phase, Long> durations = new EnumMap<>(Phase.class);
+
+    // paths can be rendered concurrently
+    private final LongAdder pathsRendered = new LongAdder();
+
+    private final LongAdder pathCacheHits = new LongAdder();
+
+    private final LongAccumulator peakBufferSize = new LongAccumulator(Math::max, 0);
+
+    // sum of the phases, used to make nested phases exclusive
+    private long recorded;
+
+    private long totalDuration;
+
+    private boolean outputCached;
+
+    private long schemasBuilt;
+
+    private long schemaCacheHits;
+
+    private long definitionsEmitted;
+
+    private long bytesWritten;
+
+    private String fingerprint;
+
+    SwaggerRenderMetrics(final String projectName, final String projectVersion, final JsonBuilderFactory builders) {
+        this.projectName = projectName;
+        this.projectVersion = projectVersion;
+        this.builders = builders;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getProjectVersion() {
+        return projectVersion;
+    }
+
+    /**
+     * @param phase the phase.
+     * @return the time spent in this phase in nanoseconds.
+     */
+    public long getDuration(final Phase phase) {
+        return durations.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * @return the time of the whole render in nanoseconds.
+     */
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * @return true if the whole output was reused from the render cache.
+     */
+    public boolean isOutputCached() {
+        return outputCached;
+    }
+
+    public long getPathsRendered() {
+        return pathsRendered.sum();
+    }
+
+    /**
+     * @return the number of paths reused from the render cache.
+     */
+    public long getPathCacheHits() {
+        return pathCacheHits.sum();
+    }
+
+    /**
+     * @return the number of schemas built by this render, 0 if the output was reused from the render cache.
+     */
+    public long getSchemasBuilt() {
+        return schemasBuilt;
+    }
+
+    /**
+     * @return the number of schemas this render reused instead of building them again (a type met several times).
+     */
+    public long getSchemaCacheHits() {
+        return schemaCacheHits;
+    }
+
+    public long getDefinitionsEmitted() {
+        return definitionsEmitted;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * The fingerprint is the SHA-256 of the serialized document in the configured output format so the same model
+     * gets a different fingerprint in JSON, minified JSON and CBOR. It is stable for a given format and set of options.
+     *
+     * @return the x-fingerprint of the output, null if it is not enabled or the output is sharded.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the size in bytes, as minified JSON, of the biggest tree (path fragment or document) held in memory by
+     * the render, the output is streamed so it is not accounted.
+     */
+    public long getPeakBufferSize() {
+        return peakBufferSize.get();
+    }
+
+    public JsonObject toJson() {
+        final JsonObjectBuilder phases = builders.createObjectBuilder();
+        for (final Phase phase : Phase.values()) {
+            phases.add(phase.name().toLowerCase(ROOT), getDuration(phase));
+        }
+        return builders.createObjectBuilder()
+                .add("project", projectName == null ? "" : projectName)
+                .add("version", projectVersion == null ? "" : projectVersion)
+                .add("totalNanos", totalDuration)
+                .add("phaseNanos", phases)
+                .add("outputCached", outputCached)
+                .add("pathsRendered", getPathsRendered())
+                .add("pathCacheHits", getPathCacheHits())
+                .add("schemasBuilt", schemasBuilt)
+                .add("schemaCacheHits", schemaCacheHits)
+                .add("definitionsEmitted", definitionsEmitted)
+                .add("bytesWritten", bytesWritten)
+                .add("peakBufferSize", getPeakBufferSize())
+                .add("fingerprint", fingerprint == null ? "" : fingerprint)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+
+    // must be called from the rendering thread, nested phases are not counted twice
+    <T> T time(final Phase phase, final Supplier<T> task) {
+        final long start = System.nanoTime();
+        final long nested = recorded;
+        try {
+            return task.get();
+        } finally {
+            final long duration = System.nanoTime() - start - (recorded - nested);
+            durations.merge(phase, duration, Long::sum);
+            recorded += duration;
+        }
+    }
+
+    void time(final Phase phase, final Runnable task) {
+        time(phase, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    void onPathRendered() {
+        pathsRendered.increment();
+    }
+
+    void onPathCacheHit() {
+        pathCacheHits.increment();
+    }
+
+    void onBuffer(final long size) {
+        peakBufferSize.accumulate(size);
+    }
+
+    void onDefinitionEmitted() {
+        definitionsEmitted++;
+    }
+
+    void onSchemas(final long built, final long cacheHits) {
+        schemasBuilt = built;
+        schemaCacheHits = cacheHits;
+    }
+
+    void onOutput(final long size, final boolean cached, final long duration) {
+        bytesWritten = size;
+        outputCached = cached;
+        totalDuration = duration;
+    }
+
+    void onFingerprint(final String value) {
+        fingerprint = value;
+    }
+}
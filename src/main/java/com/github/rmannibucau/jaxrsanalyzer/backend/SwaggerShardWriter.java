@@ -0,0 +1,255 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import com.sebastian_daschner.jaxrs_analyzer.LogProvider;
+
+// splits a rendered document in one document per shard (section or tag) with only the definitions it references
+class SwaggerShardWriter {
+
+    private static final String MANIFEST = "index.json";
+
+    private final Path directory;
+
+    private final String extension;
+
+    private final Function<OutputStream, JsonGenerator> generators;
+
+    // the manifest is always pretty JSON
+    private final JsonGeneratorFactory manifestGenerators;
+
+    private final JsonBuilderFactory builders;
+
+    private final JsonReaderFactory readers;
+
+    private final Comparator<String> sectionOrder;
+
+    private final String modelSection;
+
+    SwaggerShardWriter(final Path directory, final String extension, final Function<OutputStream, JsonGenerator> generators,
+            final JsonGeneratorFactory manifestGenerators, final JsonBuilderFactory builders,
+            final JsonReaderFactory readers, final Comparator<String> sectionOrder, final String modelSection) {
+        this.directory = directory;
+        this.extension = extension;
+        this.generators = generators;
+        this.manifestGenerators = manifestGenerators;
+        this.builders = builders;
+        this.readers = readers;
+        this.sectionOrder = sectionOrder;
+        this.modelSection = modelSection;
+    }
+
+    /**
+     * @param document the whole document.
+     * @param shardOf the shard of a path from its key and value.
+     * @param parallelism how many shards can be written concurrently.
+     * @return the manifest, it is also written as index.json in the shard directory.
+     *         It is published after the shards and the shards of the previous manifest are deleted after it
+     *         so a reader of the manifest always finds the files it references. Only the files listed in the
+     *         previous manifest are deleted, the directory can hold other files.
+     */
+    JsonObject write(final JsonObject document, final BiFunction<String, JsonObject, String> shardOf,
+            final int parallelism) {
+        // a patch can have removed them
+        final JsonObject paths = document.containsKey("paths") ? document.getJsonObject("paths") : JsonValue.EMPTY_JSON_OBJECT;
+        final JsonObject definitions = document.containsKey("definitions") ? document.getJsonObject("definitions")
+                : JsonValue.EMPTY_JSON_OBJECT;
+
+        final Map<String, Map<String, JsonValue>> shards = new LinkedHashMap<>();
+        paths.forEach((key, value) -> shards.computeIfAbsent(shardOf.apply(key, value.asJsonObject()), k -> new LinkedHashMap<>())
+                .put(key, value));
+
+        final Map<String, String> files = new LinkedHashMap<>();
+        final Set<String> usedFiles = new HashSet<>();
+        usedFiles.add(MANIFEST);
+        shards.keySet().forEach(shard -> files.put(shard, FileNames.toFileName(shard, usedFiles, extension)));
+
+        try {
+            Files.createDirectories(directory);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not create " + directory, e);
+        }
+        final Set<String> previousFiles = readPreviousShards();
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            shards.entrySet().stream()
+                    .map(shard -> pool.submit(() -> writeShard(document, definitions, shard.getValue(),
+                            directory.resolve(files.get(shard.getKey())))))
+                    .collect(toList())
+                    .forEach(ForkJoinTask::join);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        final JsonObjectBuilder shardFiles = builders.createObjectBuilder();
+        files.forEach(shardFiles::add);
+        final JsonObjectBuilder pathFiles = builders.createObjectBuilder();
+        shards.forEach((shard, shardPaths) -> shardPaths.keySet().forEach(path -> pathFiles.add(path, files.get(shard))));
+        final JsonObject manifest = builders.createObjectBuilder()
+                .add("shards", shardFiles)
+                .add("paths", pathFiles)
+                .build();
+
+        write(directory.resolve(MANIFEST), manifestGenerators::createGenerator, generator -> generator.write(manifest));
+        previousFiles.removeAll(files.values());
+        deletePreviousShards(previousFiles);
+        return manifest;
+    }
+
+    private void writeShard(final JsonObject document, final JsonObject definitions, final Map<String, JsonValue> paths,
+            final Path file) {
+        final Set<String> references = SwaggerDefinitionCompactor.findReferences(paths.values(), definitions);
+        final Set<String> tags = new HashSet<>();
+        final Collection<String> sections = new TreeSet<>(sectionOrder);
+        paths.values().forEach(path -> path.asJsonObject().forEach((key, operation) -> {
+            if ("x-restlet".equals(key)) {
+                final JsonValue section = operation.asJsonObject().get("section");
+                if (section instanceof JsonString) {
+                    sections.add(((JsonString) section).getString());
+                }
+            } else if (operation.getValueType() == JsonValue.ValueType.OBJECT && operation.asJsonObject().containsKey("tags")) {
+                operation.asJsonObject().getJsonArray("tags").getValuesAs(JsonString.class)
+                        .forEach(tag -> tags.add(tag.getString()));
+            }
+        }));
+        if (!references.isEmpty()) {
+            sections.add(modelSection);
+        }
+
+        write(file, generators, generator -> {
+            generator.writeStartObject();
+            document.forEach((key, value) -> {
+                switch (key) {
+                case "paths":
+                    generator.writeStartObject(key);
+                    paths.forEach(generator::write);
+                    generator.writeEnd();
+                    break;
+                case "definitions":
+                    generator.writeStartObject(key);
+                    definitions.entrySet().stream().filter(e -> references.contains(e.getKey()))
+                            .forEach(e -> generator.write(e.getKey(), e.getValue()));
+                    generator.writeEnd();
+                    break;
+                case "tags":
+                    generator.writeStartArray(key);
+                    value.asJsonArray().stream().filter(tag -> tags.contains(tag.asJsonObject().getString("name", null)))
+                            .forEach(generator::write);
+                    generator.writeEnd();
+                    break;
+                case "x-restlet":
+                    final JsonArrayBuilder shardSections = builders.createArrayBuilder();
+                    sections.forEach(shardSections::add);
+                    generator.write(key, builders.createObjectBuilder(value.asJsonObject()).add("sections", shardSections).build());
+                    break;
+                default:
+                    generator.write(key, value);
+                }
+            });
+            generator.writeEnd();
+        });
+    }
+
+    // written next to the file then moved so a reader never sees a partial file
+    private static void write(final Path file, final Function<OutputStream, JsonGenerator> generators,
+            final Consumer<JsonGenerator> content) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            // the CBOR generator writes byte per byte
+            try (final OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp));
+                 final JsonGenerator generator = generators.apply(stream)) {
+                content.accept(generator);
+            }
+            try {
+                Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (final IOException e) {
+                    LogProvider.debug(e);
+                }
+            }
+        }
+    }
+
+    // the files of the previous manifest, they are the only ones this writer owns in the directory
+    private Set<String> readPreviousShards() {
+        final Path manifest = directory.resolve(MANIFEST);
+        final Set<String> previousFiles = new HashSet<>();
+        if (!Files.exists(manifest)) {
+            return previousFiles;
+        }
+        try (final JsonReader reader = readers.createReader(Files.newBufferedReader(manifest, UTF_8))) {
+            final JsonObject shards = reader.readObject().getJsonObject("shards");
+            if (shards != null) {
+                shards.values().stream().filter(file -> file instanceof JsonString)
+                        .map(file -> ((JsonString) file).getString())
+                        .filter(this::isShardFile)
+                        .forEach(previousFiles::add);
+            }
+        } catch (final Exception e) { // then nothing is deleted
+            LogProvider.error("Could not read the previous shards manifest " + manifest + ", reason: " + e.getMessage());
+            LogProvider.debug(e);
+        }
+        return previousFiles;
+    }
+
+    // a name of this directory and not the manifest itself
+    private boolean isShardFile(final String file) {
+        final Path absoluteDirectory = directory.toAbsolutePath().normalize();
+        return !MANIFEST.equals(file) && absoluteDirectory.equals(absoluteDirectory.resolve(file).normalize().getParent());
+    }
+
+    private void deletePreviousShards(final Collection<String> files) {
+        try {
+            for (final String file : files) {
+                Files.deleteIfExists(directory.resolve(file));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not delete the previous shards of " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.read;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+public class CborGeneratorTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() {
+        final JsonArrayBuilder longs = Json.createArrayBuilder();
+        for (final long value : new long[] {
+                0, 1, 23, 24, 255, 256, 65535, 65536, 0xFFFFFFFFL, 0x100000000L, Long.MAX_VALUE,
+                -1, -24, -25, -256, -257, -65536, -65537, -0x100000000L, -0x100000001L, Long.MIN_VALUE}) {
+            longs.add(value);
+        }
+        final JsonObjectBuilder strings = Json.createObjectBuilder();
+        for (final int length : new int[] {0, 23, 24, 255, 256, 65535, 65536, 70000}) {
+            strings.add("s" + length, repeat('a', length));
+        }
+        final JsonObject document = Json.createObjectBuilder()
+                .add("longs", longs)
+                .add("bignums", Json.createArrayBuilder()
+                        .add(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE))
+                        .add(BigInteger.valueOf(Long.MIN_VALUE).subtract(BigInteger.ONE))
+                        .add(new BigInteger("123456789012345678901234567890")))
+                .add("decimals", Json.createArrayBuilder().add(new BigDecimal("12.345")).add(new BigDecimal("-0.5")))
+                .add("strings", strings)
+                .add("unicode", "héllo € 😀 日本")
+                .add("été", "non ASCII key")
+                .add("literals", Json.createArrayBuilder().addNull().add(true).add(false))
+                .add("nested", Json.createObjectBuilder()
+                        .add("empty", JsonValue.EMPTY_JSON_OBJECT)
+                        .add("emptyArray", JsonValue.EMPTY_JSON_ARRAY)
+                        .add("matrix", Json.createArrayBuilder()
+                                .add(Json.createArrayBuilder().add(1).add(2))
+                                .add(Json.createArrayBuilder().add(Json.createObjectBuilder().add("deep", "value")))))
+                .build();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = new CborGenerator(output)) {
+            generator.write(document);
+        }
+        assertEquals(document, new CborReader(output.toByteArray()).read());
+    }
+
+    @Test
+    public void streamedValues() {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = new CborGenerator(output)) {
+            generator.writeStartObject()
+                    .write("int", -7)
+                    .write("long", 1L << 40)
+                    .write("double", 1.5)
+                    .write("negativeDouble", -0.25)
+                    .write("string", repeat('é', 300))
+                    .write("true", true)
+                    .write("false", false)
+                    .writeNull("null")
+                    .writeStartArray("array").write(3.25).write("x").writeNull().writeEnd()
+                    .writeEnd();
+        }
+        final JsonObject document = new CborReader(output.toByteArray()).read().asJsonObject();
+
+        assertEquals(-7, document.getInt("int"));
+        assertEquals(1L << 40, document.getJsonNumber("long").longValueExact());
+        assertEquals(1.5, document.getJsonNumber("double").doubleValue(), 0);
+        assertEquals(-0.25, document.getJsonNumber("negativeDouble").doubleValue(), 0);
+        assertEquals(repeat('é', 300), document.getString("string"));
+        assertEquals(JsonValue.TRUE, document.get("true"));
+        assertEquals(JsonValue.FALSE, document.get("false"));
+        assertEquals(JsonValue.NULL, document.get("null"));
+        assertEquals(Json.createArrayBuilder().add(3.25).add("x").addNull().build(), document.getJsonArray("array"));
+    }
+
+    @Test
+    public void sameDocumentAsJson() {
+        final Project project = TestProjects.sameNamedTypes(50);
+        final JsonObject json = read(new EnrichedSwaggerBackend().render(project));
+
+        final EnrichedSwaggerBackend cbor = new EnrichedSwaggerBackend();
+        cbor.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_OUTPUT_FORMAT, "cbor"));
+        assertEquals(json, new CborReader(cbor.render(project)).read());
+    }
+
+    @Test
+    public void shardsAreTheJsonOnes() throws IOException {
+        final Project project = TestProjects.sameNamedTypes(50);
+        final Path json = temporaryFolder.newFolder("json").toPath();
+        final Path cbor = temporaryFolder.newFolder("cbor").toPath();
+        final JsonObject jsonManifest = renderShards(project, json, "json");
+        final JsonObject cborManifest = renderShards(project, cbor, "cbor");
+
+        assertEquals(jsonManifest.getJsonObject("shards").keySet(), cborManifest.getJsonObject("shards").keySet());
+        for (final String shard : jsonManifest.getJsonObject("shards").keySet()) {
+            final String jsonFile = jsonManifest.getJsonObject("shards").getString(shard);
+            final String cborFile = cborManifest.getJsonObject("shards").getString(shard);
+            assertTrue(cborFile, cborFile.endsWith(".cbor"));
+            assertEquals(shard, read(Files.readAllBytes(json.resolve(jsonFile))),
+                    new CborReader(Files.readAllBytes(cbor.resolve(cborFile))).read());
+        }
+    }
+
+    private static JsonObject renderShards(final Project project, final Path directory, final String format) {
+        final Map<String, String> config = new HashMap<>();
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_SHARDS, directory.toString());
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_OUTPUT_FORMAT, format);
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(config);
+        return read(backend.render(project)); // the manifest is always JSON
+    }
+
+    private static String repeat(final char c, final int length) {
+        final char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    // decodes what CborGenerator writes, fails on anything else
+    private static class CborReader {
+
+        private final ByteBuffer buffer;
+
+        private CborReader(final byte[] cbor) {
+            this.buffer = ByteBuffer.wrap(cbor);
+        }
+
+        private JsonValue read() {
+            final JsonValue value = readValue(buffer.get() & 0xFF);
+            assertEquals("trailing bytes", 0, buffer.remaining());
+            return value;
+        }
+
+        private JsonValue readValue(final int initial) {
+            switch (initial) {
+            case 0x9F:
+                final JsonArrayBuilder array = Json.createArrayBuilder();
+                for (int next = buffer.get() & 0xFF; next != 0xFF; next = buffer.get() & 0xFF) {
+                    array.add(readValue(next));
+                }
+                return array.build();
+            case 0xBF:
+                final JsonObjectBuilder object = Json.createObjectBuilder();
+                for (int next = buffer.get() & 0xFF; next != 0xFF; next = buffer.get() & 0xFF) {
+                    object.add(readText(next), readValue(buffer.get() & 0xFF));
+                }
+                return object.build();
+            case 0xF4:
+                return JsonValue.FALSE;
+            case 0xF5:
+                return JsonValue.TRUE;
+            case 0xF6:
+                return JsonValue.NULL;
+            case 0xFB:
+                return Json.createValue(buffer.getDouble());
+            default:
+                break;
+            }
+            final long argument = readArgument(initial);
+            switch (initial >> 5) {
+            case 0:
+                return Json.createValue(argument);
+            case 1:
+                return Json.createValue(-1 - argument);
+            case 3:
+                return Json.createValue(readText(argument));
+            case 6:
+                return Json.createValue(readTagged(argument));
+            default:
+                throw new IllegalStateException("Unexpected initial byte " + Integer.toHexString(initial));
+            }
+        }
+
+        private BigDecimal readTagged(final long tag) {
+            if (tag == 4) { // [exponent, mantissa]
+                assertEquals(0x82, buffer.get() & 0xFF);
+                final int exponent = ((JsonNumber) readValue(buffer.get() & 0xFF)).intValueExact();
+                final BigInteger mantissa = ((JsonNumber) readValue(buffer.get() & 0xFF)).bigIntegerValueExact();
+                return new BigDecimal(mantissa, -exponent);
+            }
+            final int initial = buffer.get() & 0xFF;
+            assertEquals(2, initial >> 5);
+            final byte[] bytes = new byte[(int) readArgument(initial)];
+            buffer.get(bytes);
+            final BigInteger value = new BigInteger(1, bytes);
+            if (tag == 2) {
+                return new BigDecimal(value);
+            }
+            assertEquals(3, tag);
+            return new BigDecimal(value.add(BigInteger.ONE).negate());
+        }
+
+        private String readText(final int initial) {
+            assertEquals(3, initial >> 5);
+            return readText(readArgument(initial));
+        }
+
+        private String readText(final long length) {
+            final byte[] bytes = new byte[(int) length];
+            buffer.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+
+        // the writer must use the shortest encoding of the argument
+        private long readArgument(final int initial) {
+            final int info = initial & 0x1F;
+            final long value;
+            final long min;
+            switch (info) {
+            case 24:
+                value = buffer.get() & 0xFF;
+                min = 24;
+                break;
+            case 25:
+                value = buffer.getShort() & 0xFFFF;
+                min = 0x100;
+                break;
+            case 26:
+                value = buffer.getInt() & 0xFFFFFFFFL;
+                min = 0x10000;
+                break;
+            case 27:
+                value = buffer.getLong();
+                min = 0x100000000L;
+                break;
+            default:
+                if (info > 27) {
+                    throw new IllegalStateException("Unexpected additional information " + info);
+                }
+                return info;
+            }
+            assertTrue("shortest encoding", Long.compareUnsigned(value, min) >= 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonMergePatch;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonPatch;
+import javax.json.JsonPatchBuilder;
+import javax.json.JsonPointer;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+
+// the default provider counting the builders and parsers created by its factories, for the swaggerJsonProvider option
+public final class CountingJsonProvider extends JsonProvider {
+
+    static final AtomicInteger BUILDERS = new AtomicInteger();
+
+    static final AtomicInteger PARSERS = new AtomicInteger();
+
+    private final JsonProvider delegate = JsonProvider.provider();
+
+    static void reset() {
+        BUILDERS.set(0);
+        PARSERS.set(0);
+    }
+
+    @Override
+    public JsonBuilderFactory createBuilderFactory(final Map<String, ?> config) {
+        final JsonBuilderFactory factory = delegate.createBuilderFactory(config);
+        return new JsonBuilderFactory() {
+
+            @Override
+            public JsonObjectBuilder createObjectBuilder() {
+                BUILDERS.incrementAndGet();
+                return factory.createObjectBuilder();
+            }
+
+            @Override
+            public JsonObjectBuilder createObjectBuilder(final JsonObject object) {
+                BUILDERS.incrementAndGet();
+                return factory.createObjectBuilder(object);
+            }
+
+            @Override
+            public JsonArrayBuilder createArrayBuilder() {
+                BUILDERS.incrementAndGet();
+                return factory.createArrayBuilder();
+            }
+
+            @Override
+            public JsonArrayBuilder createArrayBuilder(final JsonArray array) {
+                BUILDERS.incrementAndGet();
+                return factory.createArrayBuilder(array);
+            }
+
+            @Override
+            public Map<String, ?> getConfigInUse() {
+                return factory.getConfigInUse();
+            }
+        };
+    }
+
+    @Override
+    public JsonParserFactory createParserFactory(final Map<String, ?> config) {
+        final JsonParserFactory factory = delegate.createParserFactory(config);
+        return new JsonParserFactory() {
+
+            @Override
+            public JsonParser createParser(final Reader reader) {
+                PARSERS.incrementAndGet();
+                return factory.createParser(reader);
+            }
+
+            @Override
+            public JsonParser createParser(final InputStream in) {
+                PARSERS.incrementAndGet();
+                return factory.createParser(in);
+            }
+
+            @Override
+            public JsonParser createParser(final InputStream in, final Charset charset) {
+                PARSERS.incrementAndGet();
+                return factory.createParser(in, charset);
+            }
+
+            @Override
+            public JsonParser createParser(final JsonObject obj) {
+                PARSERS.incrementAndGet();
+                return factory.createParser(obj);
+            }
+
+            @Override
+            public JsonParser createParser(final JsonArray array) {
+                PARSERS.incrementAndGet();
+                return factory.createParser(array);
+            }
+
+            @Override
+            public Map<String, ?> getConfigInUse() {
+                return factory.getConfigInUse();
+            }
+        };
+    }
+
+    @Override
+    public JsonParser createParser(final Reader reader) {
+        return delegate.createParser(reader);
+    }
+
+    @Override
+    public JsonParser createParser(final InputStream in) {
+        return delegate.createParser(in);
+    }
+
+    @Override
+    public JsonGenerator createGenerator(final Writer writer) {
+        return delegate.createGenerator(writer);
+    }
+
+    @Override
+    public JsonGenerator createGenerator(final OutputStream out) {
+        return delegate.createGenerator(out);
+    }
+
+    @Override
+    public JsonGeneratorFactory createGeneratorFactory(final Map<String, ?> config) {
+        return delegate.createGeneratorFactory(config);
+    }
+
+    @Override
+    public JsonReader createReader(final Reader reader) {
+        return delegate.createReader(reader);
+    }
+
+    @Override
+    public JsonReader createReader(final InputStream in) {
+        return delegate.createReader(in);
+    }
+
+    @Override
+    public JsonWriter createWriter(final Writer writer) {
+        return delegate.createWriter(writer);
+    }
+
+    @Override
+    public JsonWriter createWriter(final OutputStream out) {
+        return delegate.createWriter(out);
+    }
+
+    @Override
+    public JsonWriterFactory createWriterFactory(final Map<String, ?> config) {
+        return delegate.createWriterFactory(config);
+    }
+
+    @Override
+    public JsonReaderFactory createReaderFactory(final Map<String, ?> config) {
+        return delegate.createReaderFactory(config);
+    }
+
+    @Override
+    public JsonObjectBuilder createObjectBuilder() {
+        return delegate.createObjectBuilder();
+    }
+
+    @Override
+    public JsonArrayBuilder createArrayBuilder() {
+        return delegate.createArrayBuilder();
+    }
+
+    @Override
+    public JsonArrayBuilder createArrayBuilder(final Collection<?> collection) {
+        return delegate.createArrayBuilder(collection);
+    }
+
+    @Override
+    public JsonPointer createPointer(final String jsonPointer) {
+        return delegate.createPointer(jsonPointer);
+    }
+
+    @Override
+    public JsonPatchBuilder createPatchBuilder(final JsonArray array) {
+        return delegate.createPatchBuilder(array);
+    }
+
+    @Override
+    public JsonPatch createPatch(final JsonArray array) {
+        return delegate.createPatch(array);
+    }
+
+    @Override
+    public JsonMergePatch createMergePatch(final JsonValue patch) {
+        return delegate.createMergePatch(patch);
+    }
+
+    @Override
+    public JsonPatch createDiff(final JsonStructure source, final JsonStructure target) {
+        return delegate.createDiff(source, target);
+    }
+}
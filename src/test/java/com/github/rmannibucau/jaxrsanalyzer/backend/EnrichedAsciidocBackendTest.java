@@ -0,0 +1,190 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static java.util.Optional.ofNullable;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sebastian_daschner.jaxrs_analyzer.backend.asciidoc.AsciiDocBackend;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.HttpMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Response;
+
+public class EnrichedAsciidocBackendTest {
+
+    private static final Pattern INCLUDE = Pattern.compile("include::([^\\[]+)\\[\\]\n\n");
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void streamedDocumentIsTheUpstreamOne() {
+        final Project project = TestProjects.operations();
+        final ResourceMethod described = new ResourceMethod(HttpMethod.DELETE,
+                "Deletes an item.\n    Indented line\n\n  after an empty line\n \n\tnot a space\n   ");
+        described.getResponses().put(204, new Response());
+        project.getResources().addMethod("items/{id}", described);
+        final ResourceMethod trailing = new ResourceMethod(HttpMethod.HEAD, "\n  starts with a new line\n");
+        trailing.getResponses().put(200, new Response());
+        project.getResources().addMethod("items/{id}", trailing);
+
+        final BaselineAsciidocBackend baseline = new BaselineAsciidocBackend();
+        baseline.configure(emptyMap());
+        final byte[] expected = baseline.render(project);
+
+        final EnrichedAsciidocBackend backend = new EnrichedAsciidocBackend();
+        backend.configure(emptyMap());
+        assertEquals(new String(expected, Charset.defaultCharset()), render(backend, project));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        backend.render(project, output, Charset.defaultCharset());
+        assertArrayEquals(expected, output.toByteArray());
+
+        final StringWriter writer = new StringWriter();
+        backend.render(project, writer);
+        assertEquals(new String(expected, Charset.defaultCharset()), writer.toString());
+    }
+
+    @Test
+    public void parallelSectionsAreTheSequentialDocument() {
+        final Project project = TestProjects.sameNamedTypes(50);
+        final String sequential = renderSequentially(project);
+
+        final EnrichedAsciidocBackend parallel = new EnrichedAsciidocBackend();
+        parallel.configure(singletonMap(EnrichedAsciidocBackend.ASCIIDOC_PARALLELISM, "4"));
+        assertEquals(sequential, render(parallel, project));
+    }
+
+    @Test
+    public void includesAreTheSequentialDocument() throws IOException {
+        final Project project = TestProjects.sameNamedTypes(50);
+        final String sequential = renderSequentially(project);
+
+        for (final String parallelism : new String[] {"1", "4"}) {
+            final Path root = temporaryFolder.newFolder().toPath();
+            final Path document = root.resolve("api.adoc");
+            final String content = renderWithIncludes(project, document, root.resolve("api"), parallelism);
+            assertTrue(content.startsWith(sequential.substring(0, sequential.indexOf("== "))));
+            assertTrue(content, content.contains("include::api/resource0000.adoc[]"));
+            assertEquals(parallelism, sequential, expandIncludes(document));
+        }
+    }
+
+    @Test
+    public void includesAreRelativeToTheDocument() throws IOException {
+        final Project project = TestProjects.sameNamedTypes(5);
+        final Path root = temporaryFolder.newFolder().toPath();
+        final Path document = root.resolve("docs/api/index.adoc");
+        final String content = renderWithIncludes(project, document, root.resolve("generated/sections"), "1");
+
+        assertTrue(content, content.contains("include::../../generated/sections/resource0000.adoc[]"));
+        assertEquals(renderSequentially(project), expandIncludes(document));
+    }
+
+    @Test
+    public void removedSectionsDeleteTheirIncludes() throws IOException {
+        final Path root = temporaryFolder.newFolder().toPath();
+        final Path includes = root.resolve("api");
+        renderWithIncludes(TestProjects.sameNamedTypes(5), root.resolve("api.adoc"), includes, "1");
+        assertTrue(Files.exists(includes.resolve("resource0004.adoc")));
+        // hand-written files of the directory, not written by the backend
+        Files.write(includes.resolve("notes.txt"), new byte[0]);
+        Files.write(includes.resolve("introduction.adoc"), "= Introduction\n".getBytes(Charset.defaultCharset()));
+
+        renderWithIncludes(TestProjects.sameNamedTypes(3), root.resolve("api.adoc"), includes, "1");
+        assertTrue(Files.exists(includes.resolve("resource0002.adoc")));
+        assertFalse(Files.exists(includes.resolve("resource0003.adoc")));
+        assertFalse(Files.exists(includes.resolve("resource0004.adoc")));
+        assertTrue(Files.exists(includes.resolve("notes.txt")));
+        assertEquals("= Introduction\n", read(includes.resolve("introduction.adoc")));
+    }
+
+    @Test
+    public void includesInTheDocumentDirectoryAreRejected() throws IOException {
+        final Path root = temporaryFolder.newFolder().toPath();
+        final Path document = root.resolve("api.adoc");
+        Files.write(document, "= Previous\n".getBytes(Charset.defaultCharset()));
+        try {
+            renderWithIncludes(TestProjects.sameNamedTypes(3), document, root.resolve("sections/.."), "1");
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("asciidocIncludes"));
+        }
+        assertEquals("= Previous\n", read(document));
+        assertFalse(Files.exists(root.resolve("resource0000.adoc")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rootIncludesAreRejected() {
+        new EnrichedAsciidocBackend().configure(singletonMap(EnrichedAsciidocBackend.ASCIIDOC_INCLUDES,
+                temporaryFolder.getRoot().toPath().getRoot().toString()));
+    }
+
+    // configured like the sections modes, an unconfigured backend does not prettify the JSON samples
+    private static String renderSequentially(final Project project) {
+        final EnrichedAsciidocBackend backend = new EnrichedAsciidocBackend();
+        backend.configure(emptyMap());
+        return render(backend, project);
+    }
+
+    private static String render(final EnrichedAsciidocBackend backend, final Project project) {
+        return new String(backend.render(project), Charset.defaultCharset());
+    }
+
+    private static String renderWithIncludes(final Project project, final Path document, final Path includes,
+            final String parallelism) throws IOException {
+        final Map<String, String> config = new HashMap<>();
+        config.put(EnrichedAsciidocBackend.ASCIIDOC_INCLUDES, includes.toString());
+        config.put(EnrichedAsciidocBackend.ASCIIDOC_PARALLELISM, parallelism);
+        final EnrichedAsciidocBackend backend = new EnrichedAsciidocBackend();
+        backend.configure(config);
+        backend.render(project, document);
+        return read(document);
+    }
+
+    // what asciidoctor does: the targets are resolved from the directory of the document
+    private static String expandIncludes(final Path document) throws IOException {
+        final Matcher matcher = INCLUDE.matcher(read(document));
+        final StringBuffer expanded = new StringBuffer();
+        while (matcher.find()) {
+            matcher.appendReplacement(expanded,
+                    Matcher.quoteReplacement(read(document.getParent().resolve(matcher.group(1)))));
+        }
+        return matcher.appendTail(expanded).toString();
+    }
+
+    private static String read(final Path file) throws IOException {
+        return new String(Files.readAllBytes(file), Charset.defaultCharset());
+    }
+
+    // the backend before the streaming render: the upstream render loop and a regex to remove the indentation
+    private static class BaselineAsciidocBackend extends AsciiDocBackend {
+
+        @Override
+        protected void appendMethod(final String baseUri, final String resource, final ResourceMethod resourceMethod) {
+            super.appendMethod(baseUri, resource, resourceMethod);
+            ofNullable(resourceMethod.getDescription())
+                    .ifPresent(d -> builder.append(d.replaceAll("\n +", "\n")).append("\n\n"));
+        }
+    }
+}
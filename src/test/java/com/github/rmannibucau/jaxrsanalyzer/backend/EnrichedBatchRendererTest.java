@@ -0,0 +1,136 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_CACHE;
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_METRICS_REPORT;
+import static com.github.rmannibucau.jaxrsanalyzer.backend.EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_SHARDS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+public class EnrichedBatchRendererTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void globalRenderFilesArePerProject() {
+        final Path base = temporaryFolder.getRoot().toPath();
+        final Path sharedCache = base.resolve("cache").toAbsolutePath();
+        final Map<String, String> global = new HashMap<>();
+        global.put(SWAGGER_METRICS_REPORT, "metrics.json");
+        global.put(SWAGGER_SHARDS, "shards");
+        global.put(SWAGGER_CACHE, sharedCache.toString());
+        global.put("swaggerSchemes", "https");
+
+        final Map<String, String> a = EnrichedBatchRenderer.toProjectOptions(global, new HashMap<>(), base,
+                base.resolve("a/swagger.json"));
+        assertEquals(base.resolve("a/metrics.json").toString(), a.get(SWAGGER_METRICS_REPORT));
+        assertEquals(base.resolve("a/shards").toString(), a.get(SWAGGER_SHARDS));
+        assertEquals(sharedCache.toString(), a.get(SWAGGER_CACHE)); // the cache entries are per project
+        assertEquals("https", a.get("swaggerSchemes"));
+
+        final Map<String, String> project = new HashMap<>();
+        project.put(SWAGGER_METRICS_REPORT, "b-metrics.json");
+        final Map<String, String> b = EnrichedBatchRenderer.toProjectOptions(global, project, base,
+                base.resolve("b/swagger.json"));
+        assertEquals(base.resolve("b-metrics.json").toString(), b.get(SWAGGER_METRICS_REPORT)); // from the manifest
+        assertEquals(base.resolve("b/shards").toString(), b.get(SWAGGER_SHARDS));
+    }
+
+    @Test
+    public void projectsShareTheBackend() throws Exception {
+        final Path base = temporaryFolder.getRoot().toPath();
+        final Map<String, String> global = new HashMap<>();
+        global.put(SWAGGER_METRICS_REPORT, "metrics.json");
+        global.put("swaggerSchemes", "https");
+        try (final EnrichedBatchRenderer renderer = new EnrichedBatchRenderer(2)) {
+            for (final String name : asList("a", "b")) {
+                final Path output = base.resolve(name + "/swagger.json");
+                renderer.submit(new Project(name, "1", TestProjects.sameNamedTypes(5).getResources()),
+                        EnrichedBatchRenderer.toProjectOptions(global, new HashMap<>(), base, output), output).get();
+                // the files are still the ones of the project
+                assertTrue(Files.exists(output));
+                assertEquals(name, TestProjects.read(Files.readAllBytes(base.resolve(name + "/metrics.json")))
+                        .getString("project"));
+            }
+            assertEquals(1, renderer.getBackends().size());
+        }
+    }
+
+    @Test
+    public void backendsOfOldOptionsAreEvicted() throws Exception {
+        final Path output = temporaryFolder.getRoot().toPath().resolve("swagger.json");
+        try (final EnrichedBatchRenderer renderer = new EnrichedBatchRenderer(1)) {
+            for (int i = 0; i < 40; i++) {
+                renderer.submit(TestProjects.sameNamedTypes(1), singletonMap("domain", "host" + i), output).get();
+            }
+            assertEquals(32, renderer.getBackends().size());
+        }
+    }
+
+    @Test
+    public void projectsCantShareAClassName() throws Exception {
+        final Path base = temporaryFolder.getRoot().toPath();
+        final Path a = compile(base.resolve("a"), "package com.app.batch; public class Api { public String a; }");
+        final Path b = compile(base.resolve("b"), "package com.app.batch; public class Api { public String b; }");
+        final Path c = compile(base.resolve("c"), "package com.app.batch; public class Other { }");
+        // what the analysis of a and c registers, the analyzer itself needs a JDK 8 (tools.jar)
+        EnrichedBatchRenderer.registerClasses("a", singleton(a));
+        EnrichedBatchRenderer.registerClasses("c", singleton(c));
+        EnrichedBatchRenderer.registerClasses("a", singleton(a)); // the same class path can be analyzed again
+
+        try (final EnrichedBatchRenderer renderer = new EnrichedBatchRenderer(1)) {
+            renderer.submit("b", "1", singleton(b), emptySet(), emptySet(), emptyMap(), base.resolve("b.json")).get();
+            fail();
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("com.app.batch.Api"));
+            assertFalse(Files.exists(base.resolve("b.json")));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absoluteGlobalShards() throws IOException {
+        final Path manifest = temporaryFolder.getRoot().toPath().resolve("manifest.json");
+        Files.write(manifest, ("{'options':{'swaggerShards':'"
+                + temporaryFolder.newFolder().getAbsolutePath().replace("\\", "/")
+                + "'},'projects':[{'name':'a','version':'1','output':'a/swagger.json'}]}")
+                .replace('\'', '"').getBytes(UTF_8));
+        try (final EnrichedBatchRenderer renderer = new EnrichedBatchRenderer(1)) {
+            renderer.render(manifest);
+        }
+    }
+
+    private static Path compile(final Path directory, final String source) throws IOException {
+        final Path sources = Files.createDirectories(directory.resolve("src"));
+        final Path classes = Files.createDirectories(directory.resolve("classes"));
+        final String className = source.replaceAll(".* class (\\w+) .*", "$1");
+        final Path file = sources.resolve(className + ".java");
+        Files.write(file, source.getBytes(UTF_8));
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", classes.toString(), file.toString()));
+        return classes;
+    }
+}
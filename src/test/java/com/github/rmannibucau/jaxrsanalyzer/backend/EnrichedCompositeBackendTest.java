@@ -0,0 +1,72 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.read;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.JsonObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sebastian_daschner.jaxrs_analyzer.backend.Backend;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+public class EnrichedCompositeBackendTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void outputsAreTheBackendOutputs() throws IOException {
+        final Project project = TestProjects.sameNamedTypes(50);
+        final Path root = temporaryFolder.newFolder().toPath();
+        final Path swagger = root.resolve("swagger/swagger.json");
+        final Path asciidoc = root.resolve("docs/api.adoc");
+        final EnrichedCompositeBackend composite = new EnrichedCompositeBackend();
+        composite.configure(singletonMap(EnrichedCompositeBackend.COMPOSITE_OUTPUTS,
+                "swagger=" + swagger + ", asciidoc=" + asciidoc));
+
+        final JsonObject manifest = read(composite.render(project));
+        assertEquals(swagger.toString(), manifest.getString("swagger"));
+        assertEquals(asciidoc.toString(), manifest.getString("asciidoc"));
+        assertArrayEquals(render(new EnrichedSwaggerBackend(), project), Files.readAllBytes(swagger));
+        assertArrayEquals(render(new EnrichedAsciidocBackend(), project), Files.readAllBytes(asciidoc));
+    }
+
+    @Test
+    public void optionsArePassedToTheBackends() throws IOException {
+        final Project project = TestProjects.sameNamedTypes(20);
+        final Path swagger = temporaryFolder.newFolder().toPath().resolve("swagger.json");
+        final Map<String, String> config = new HashMap<>();
+        config.put(EnrichedCompositeBackend.COMPOSITE_OUTPUTS, "swagger=" + swagger);
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_OUTPUT_FORMAT, "minified-json");
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_PARALLELISM, "4");
+        final EnrichedCompositeBackend composite = new EnrichedCompositeBackend();
+        composite.configure(config);
+        composite.render(project);
+
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(config);
+        assertArrayEquals(backend.render(project), Files.readAllBytes(swagger));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownBackend() {
+        new EnrichedCompositeBackend().configure(singletonMap(EnrichedCompositeBackend.COMPOSITE_OUTPUTS, "missing=out.txt"));
+    }
+
+    private static byte[] render(final Backend backend, final Project project) {
+        backend.configure(emptyMap());
+        return backend.render(project);
+    }
+}
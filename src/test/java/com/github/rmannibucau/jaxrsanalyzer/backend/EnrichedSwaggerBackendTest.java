@@ -0,0 +1,739 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.addGet;
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.addType;
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.read;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.HttpMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.MethodParameter;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ParameterType;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Response;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeIdentifier;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeRepresentation;
+
+public class EnrichedSwaggerBackendTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sameSimpleNamesGetUniqueDefinitions() {
+        final int count = 300;
+        final JsonObject swagger = read(new EnrichedSwaggerBackend().render(TestProjects.sameNamedTypes(count)));
+
+        final JsonObject definitions = swagger.getJsonObject("definitions");
+        assertEquals(count, definitions.size());
+        assertTrue(definitions.containsKey("Dto"));
+        for (int i = 2; i <= count; i++) {
+            assertTrue("Dto_" + i, definitions.containsKey("Dto_" + i));
+        }
+
+        // a type always gets the same name: the child of the definition returned by a path is the one of its type
+        final Map<Integer, String> names = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String ref = responseRef(swagger, String.format("/resource%04d", i));
+            assertNull(names.put((i * 13 + 5) % count, ref));
+        }
+        names.forEach((type, ref) -> assertEquals(ref, names.get((type * 7 + 3) % count),
+                definitions.getJsonObject(ref.substring("#/definitions/".length()))
+                        .getJsonObject("properties").getJsonObject("child").getString("$ref")));
+    }
+
+    @Test
+    public void thirdSameSimpleName() {
+        final Resources resources = new Resources();
+        addGet(resources, "a", addType(resources, "Lcom/a/Foo;"));
+        addGet(resources, "b", addType(resources, "Lcom/b/Foo;"));
+        addGet(resources, "c", addType(resources, "Lcom/c/Foo;"));
+
+        final JsonObject swagger = read(new EnrichedSwaggerBackend().render(new Project("foo", "1", resources)));
+        assertEquals("#/definitions/Foo", responseRef(swagger, "/a"));
+        assertEquals("#/definitions/Foo_2", responseRef(swagger, "/b"));
+        assertEquals("#/definitions/Foo_3", responseRef(swagger, "/c"));
+        assertEquals(3, swagger.getJsonObject("definitions").size());
+    }
+
+    @Test
+    public void typeNamedLikeAGeneratedName() {
+        final Resources resources = new Resources();
+        addGet(resources, "a", addType(resources, "Lcom/z/Foo_2;"));
+        addGet(resources, "b", addType(resources, "Lcom/a/Foo;"));
+        addGet(resources, "c", addType(resources, "Lcom/b/Foo;"));
+
+        final JsonObject swagger = read(new EnrichedSwaggerBackend().render(new Project("foo", "1", resources)));
+        assertEquals("#/definitions/Foo_2", responseRef(swagger, "/a"));
+        assertEquals("#/definitions/Foo", responseRef(swagger, "/b"));
+        assertEquals("#/definitions/Foo_3", responseRef(swagger, "/c"));
+    }
+
+    @Test
+    public void definitionNamesAreStable() {
+        final Project project = TestProjects.sameNamedTypes(200);
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        final byte[] first = backend.render(project);
+        assertArrayEquals(first, backend.render(project));
+        assertArrayEquals(first, new EnrichedSwaggerBackend().render(project));
+    }
+
+    @Test
+    public void parallelRenderIsTheSequentialOne() {
+        final Project project = TestProjects.sameNamedTypes(300);
+        final byte[] sequential = new EnrichedSwaggerBackend().render(project);
+
+        final EnrichedSwaggerBackend parallel = new EnrichedSwaggerBackend();
+        parallel.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_PARALLELISM, "8"));
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(sequential, parallel.render(project));
+        }
+    }
+
+    @Test
+    public void concurrentRendersShareACacheDirectory() throws Exception {
+        final Project[] projects = {
+                TestProjects.sameNamedTypes(40),
+                new Project("other", "1.0", TestProjects.sameNamedTypes(60).getResources()),
+                new Project("other", "2.0", TestProjects.sameNamedTypes(80).getResources())
+        };
+        final byte[][] expected = new byte[projects.length][];
+        for (int i = 0; i < projects.length; i++) {
+            expected[i] = new EnrichedSwaggerBackend().render(projects[i]);
+        }
+
+        final Map<String, String> config = singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_CACHE,
+                temporaryFolder.getRoot().getAbsolutePath());
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            for (int pass = 0; pass < 2; pass++) { // cold then warm cache
+                final List<Future<byte[]>> outputs = new ArrayList<>();
+                for (int i = 0; i < 64; i++) {
+                    final Project project = projects[i % projects.length];
+                    outputs.add(executor.submit(() -> { // a backend per render like separate builds
+                        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+                        backend.configure(config);
+                        return backend.render(project);
+                    }));
+                }
+                for (int i = 0; i < outputs.size(); i++) {
+                    assertArrayEquals("render " + i, expected[i % projects.length], outputs.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void changedModelWithAWarmCache() throws IOException {
+        final TypeIdentifier returned = TypeIdentifier.ofType("Lcom/app/p5/Dto;"); // by resource0000
+
+        assertWarmRenderIsTheColdOne(r -> { }, r -> {
+            final MethodParameter parameter = new MethodParameter(TestProjects.STRING, ParameterType.QUERY);
+            parameter.setName("added");
+            r.getMethods("resource0003").iterator().next().getMethodParameters().add(parameter);
+        }, true);
+        assertWarmRenderIsTheColdOne(r -> addGet(r, "zzz", addType(r, "Lcom/app/removed/Dto;")), r -> { }, true);
+        // the paths keep their $ref, only the definitions change
+        assertWarmRenderIsTheColdOne(r -> { }, r -> r.getTypeRepresentations().put(returned,
+                TypeRepresentation.ofConcrete(returned, singletonMap("value", TypeIdentifier.ofType("I")))), true);
+        // the new type takes a name met before the ones of the cached paths, they must be rendered again
+        assertWarmRenderIsTheColdOne(r -> { }, r -> {
+            final Map<String, TypeIdentifier> properties = new HashMap<>();
+            properties.put("value", TestProjects.STRING);
+            properties.put("extra", addType(r, "Lcom/app/extra/Dto;"));
+            r.getTypeRepresentations().put(returned, TypeRepresentation.ofConcrete(returned, properties));
+        }, false);
+        assertWarmRenderIsTheColdOne(r -> { }, r -> addGet(r, "aaa", addType(r, "Lcom/app/first/Dto;")), false);
+    }
+
+    // the cache is filled by a render of the previous model then used to render the current one
+    private void assertWarmRenderIsTheColdOne(final Consumer<Resources> previousChange,
+            final Consumer<Resources> currentChange, final boolean reused) throws IOException {
+        final Project previous = TestProjects.sameNamedTypes(30);
+        previousChange.accept(previous.getResources());
+        final Project current = TestProjects.sameNamedTypes(30);
+        currentChange.accept(current.getResources());
+
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_CACHE,
+                temporaryFolder.newFolder().getAbsolutePath()));
+        backend.render(previous);
+        final List<SwaggerRenderMetrics> metrics = new ArrayList<>();
+        backend.addRenderListener(metrics::add);
+        final byte[] warm = backend.render(current);
+
+        assertArrayEquals(new EnrichedSwaggerBackend().render(current), warm);
+        assertEquals(false, metrics.get(0).isOutputCached());
+        if (reused) {
+            assertTrue(metrics.get(0).getPathCacheHits() > 0);
+        }
+    }
+
+    @Test
+    public void concurrentRendersWithOneBackend() throws Exception {
+        final Project[] projects = {
+                TestProjects.sameNamedTypes(50),
+                new Project("other", "1.0", TestProjects.sameNamedTypes(70).getResources())
+        };
+        final byte[][] expected = new byte[projects.length][];
+        for (int i = 0; i < projects.length; i++) {
+            expected[i] = new EnrichedSwaggerBackend().render(projects[i]);
+        }
+
+        final String cache = temporaryFolder.newFolder().getAbsolutePath();
+        final List<Map<String, String>> configs = new ArrayList<>();
+        configs.add(new HashMap<>());
+        configs.add(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_PARALLELISM, "4"));
+        configs.add(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_CACHE, cache));
+        final Map<String, String> parallelCache = new HashMap<>();
+        parallelCache.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_PARALLELISM, "4");
+        parallelCache.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_CACHE, temporaryFolder.newFolder().getAbsolutePath());
+        configs.add(parallelCache);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (final Map<String, String> config : configs) {
+                final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+                backend.configure(config);
+                final List<Future<byte[]>> outputs = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    final Project project = projects[i % projects.length];
+                    outputs.add(executor.submit(() -> backend.render(project)));
+                }
+                for (int i = 0; i < outputs.size(); i++) {
+                    assertArrayEquals(config + " render " + i, expected[i % projects.length], outputs.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void deepCyclicTypes() {
+        final int depth = 5000; // would overflow the stack with a recursive resolution
+        final JsonObject swagger = read(new EnrichedSwaggerBackend().render(TestProjects.deepCycle(depth)));
+
+        final JsonObject definitions = swagger.getJsonObject("definitions");
+        assertEquals(depth, definitions.size());
+        for (int i = 0; i < depth; i++) {
+            final JsonObject properties = definitions.getJsonObject("Level" + i).getJsonObject("properties");
+            assertEquals("#/definitions/Level0", properties.getJsonObject("root").getString("$ref"));
+            assertEquals("#/definitions/Level" + i, properties.getJsonObject("self").getString("$ref"));
+            assertEquals(i < depth - 1, properties.containsKey("next"));
+            if (i < depth - 1) {
+                assertEquals("#/definitions/Level" + (i + 1), properties.getJsonObject("next").getString("$ref"));
+            }
+        }
+    }
+
+    @Test
+    public void maxDepthTruncatesDeepTypes() {
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_MAX_DEPTH, "3"));
+        final JsonObject swagger = read(backend.render(TestProjects.deepCycle(10)));
+
+        final JsonObject definitions = swagger.getJsonObject("definitions");
+        assertEquals(3, definitions.size());
+        final JsonObject last = definitions.getJsonObject("Level2").getJsonObject("properties");
+        assertEquals("object", last.getJsonObject("next").getString("type")); // not expanded
+        assertEquals("#/definitions/Level0", last.getJsonObject("root").getString("$ref")); // already defined
+        assertEquals("#/definitions/Level2", last.getJsonObject("self").getString("$ref"));
+    }
+
+    @Test
+    public void maxDepthExpandsTypesMetHigher() {
+        final Project project = TestProjects.deepCycle(10);
+        // a second path returning the first truncated type directly
+        TestProjects.addGet(project.getResources(), "shallow",
+                TypeIdentifier.ofType("Lcom/app/deep/Level3;"));
+
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_MAX_DEPTH, "3"));
+        final JsonObject swagger = read(backend.render(project));
+
+        // the schema truncated under Level2 is not reused at a higher level
+        assertEquals("#/definitions/Level3", responseRef(swagger, "/shallow"));
+        final JsonObject definitions = swagger.getJsonObject("definitions");
+        assertTrue(definitions.getJsonObject("Level3").getJsonObject("properties").containsKey("value"));
+        // and the depth is counted from there
+        assertEquals("#/definitions/Level5", definitions.getJsonObject("Level4").getJsonObject("properties")
+                .getJsonObject("next").getString("$ref"));
+    }
+
+    @Test
+    public void compactionKeepsDifferentTypes() {
+        final Resources resources = new Resources();
+        addGet(resources, "a", addType(resources, "Lcom/a/Foo;"));
+        addGet(resources, "b", addType(resources, "Lcom/b/Foo;"));
+        addGet(resources, "c", addType(resources, "Lcom/c/Bar;"));
+        final Project project = new Project("foo", "1", resources);
+
+        final Map<String, String> config = new HashMap<>();
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_COMPACT_DEFINITIONS, "true");
+        final EnrichedSwaggerBackend compacting = new EnrichedSwaggerBackend();
+        compacting.configure(config);
+        final JsonObject compacted = read(compacting.render(project));
+        assertEquals("#/definitions/Foo", responseRef(compacted, "/a"));
+        assertEquals("#/definitions/Foo", responseRef(compacted, "/b"));
+        assertEquals("#/definitions/Bar", responseRef(compacted, "/c"));
+        assertEquals(2, compacted.getJsonObject("definitions").size());
+
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_COMPACT_ACROSS_NAMES, "true");
+        final EnrichedSwaggerBackend acrossNames = new EnrichedSwaggerBackend();
+        acrossNames.configure(config);
+        final JsonObject merged = read(acrossNames.render(project));
+        assertEquals("#/definitions/Bar", responseRef(merged, "/a"));
+        assertEquals("#/definitions/Bar", responseRef(merged, "/b"));
+        assertEquals("#/definitions/Bar", responseRef(merged, "/c"));
+        assertEquals(1, merged.getJsonObject("definitions").size());
+    }
+
+    @Test
+    public void sameHttpMethodsAreOneOperation() throws IOException {
+        final Resources resources = new Resources();
+        resources.addMethod("items", method(HttpMethod.GET, "application/json", addType(resources, "Lcom/a/Json;")));
+        resources.addMethod("items", method(HttpMethod.GET, "text/plain", addType(resources, "Lcom/a/Text;")));
+        resources.addMethod("items", method(HttpMethod.POST, "application/json", addType(resources, "Lcom/a/Created;")));
+        addGet(resources, "other", addType(resources, "Lcom/a/Other;"));
+        final Project project = new Project("foo", "1", resources);
+
+        final byte[] streamed = new EnrichedSwaggerBackend().render(project);
+        assertNoDuplicateKeys(streamed);
+
+        // a patch on the whole paths member renders the document as a tree built with JSON builders
+        final Path patch = temporaryFolder.newFile("tree.json").toPath();
+        Files.write(patch, "[{\"op\":\"copy\",\"from\":\"/paths\",\"path\":\"/paths\"}]".getBytes(UTF_8));
+        final EnrichedSwaggerBackend tree = new EnrichedSwaggerBackend();
+        tree.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.JSON_PATCH, patch.toString()));
+        assertArrayEquals(streamed, tree.render(project));
+
+        final EnrichedSwaggerBackend parallel = new EnrichedSwaggerBackend();
+        parallel.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_PARALLELISM, "4"));
+        assertArrayEquals(streamed, parallel.render(project));
+
+        // the replaced method still gets its definition
+        final JsonObject swagger = read(streamed);
+        assertTrue(swagger.getJsonObject("definitions").containsKey("Json"));
+        assertTrue(swagger.getJsonObject("definitions").containsKey("Text"));
+        assertEquals(new HashSet<>(asList("get", "post", "x-restlet")),
+                swagger.getJsonObject("paths").getJsonObject("/items").keySet());
+    }
+
+    @Test
+    public void outputIsTheTreeRenderingOne() throws IOException {
+        final Project project = TestProjects.operations();
+
+        // written by the backend before the streaming rendering, it built the whole document with JSON builders;
+        // the analyzer keeps the methods of a path in a hash set so the GET which wins depends on its iteration order
+        final String winner = project.getResources().getMethods("items").stream()
+                .filter(m -> m.getMethod() == HttpMethod.GET)
+                .reduce((first, second) -> second)
+                .map(m -> m.getResponseMediaTypes().contains("text/plain") ? "text" : "json")
+                .orElseThrow(IllegalStateException::new);
+        final byte[] expected;
+        try (final InputStream stream = getClass().getClassLoader()
+                .getResourceAsStream("baseline/operations-" + winner + ".json")) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+            expected = output.toByteArray();
+        }
+        assertArrayEquals(expected, new EnrichedSwaggerBackend().render(project));
+    }
+
+    @Test
+    public void configuredJsonProviderIsUsed() throws IOException {
+        CountingJsonProvider.reset();
+        final Map<String, String> config = new HashMap<>();
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_JSON_PROVIDER, CountingJsonProvider.class.getName());
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(config);
+        final List<SwaggerRenderMetrics> metrics = new ArrayList<>();
+        backend.addRenderListener(metrics::add);
+
+        final SwaggerDiff diff = SwaggerDiff.compare(backend, TestProjects.sameNamedTypes(3), TestProjects.sameNamedTypes(4));
+        assertTrue(CountingJsonProvider.PARSERS.get() > 0);
+        assertTrue(diff.isBreaking());
+        assertBuildsWithProvider(diff::toJson);
+        assertBuildsWithProvider(() -> diff.getBreakingChanges().get(0).toJson());
+        assertEquals(2, metrics.size());
+        assertBuildsWithProvider(metrics.get(0)::toJson);
+
+        // only the manifest is JSON
+        config.put(EnrichedCompositeBackend.COMPOSITE_OUTPUTS,
+                "asciidoc=" + temporaryFolder.newFolder().toPath().resolve("api.adoc"));
+        final EnrichedCompositeBackend composite = new EnrichedCompositeBackend();
+        composite.configure(config);
+        assertBuildsWithProvider(() -> composite.render(TestProjects.sameNamedTypes(3)));
+    }
+
+    @Test
+    public void fingerprintIsTheHashOfTheDocument() throws Exception {
+        final Map<String, String> config = new HashMap<>();
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_FINGERPRINT, "true");
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_OUTPUT_FORMAT, "minified-json");
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(config);
+        final List<SwaggerRenderMetrics> metrics = new ArrayList<>();
+        backend.addRenderListener(metrics::add);
+
+        final byte[] output = backend.render(TestProjects.sameNamedTypes(5));
+        final String fingerprint = metrics.get(0).getFingerprint();
+        final JsonObject swagger = read(output);
+        assertEquals("x-fingerprint", new ArrayList<>(swagger.keySet()).get(swagger.size() - 1));
+        assertEquals(fingerprint, swagger.getString("x-fingerprint"));
+
+        // the bytes before the member
+        final String json = new String(output, UTF_8);
+        final byte[] hashed = json.substring(0, json.indexOf(",\"x-fingerprint\"")).getBytes(UTF_8);
+        final StringBuilder expected = new StringBuilder("sha256:");
+        for (final byte b : MessageDigest.getInstance("SHA-256").digest(hashed)) {
+            expected.append(String.format("%02x", b));
+        }
+        assertEquals(expected.toString(), fingerprint);
+
+        assertArrayEquals(output, backend.render(TestProjects.sameNamedTypes(5)));
+        assertEquals(fingerprint, metrics.get(1).getFingerprint());
+        backend.render(TestProjects.sameNamedTypes(6));
+        assertNotEquals(fingerprint, metrics.get(2).getFingerprint());
+
+        // each format has its own fingerprint
+        config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_OUTPUT_FORMAT, "json");
+        backend.configure(config);
+        backend.render(TestProjects.sameNamedTypes(5));
+        assertNotEquals(fingerprint, metrics.get(3).getFingerprint());
+    }
+
+    @Test
+    public void unchangedFingerprintedOutputIsNotRewritten() throws IOException {
+        for (final String format : asList("json", "minified-json", "cbor")) {
+            final Path target = temporaryFolder.newFolder().toPath().resolve("swagger." + format);
+            final Map<String, String> config = new HashMap<>();
+            config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_FINGERPRINT, "true");
+            config.put(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_OUTPUT_FORMAT, format);
+            final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+            backend.configure(config);
+
+            final FileTime old = FileTime.fromMillis(0);
+            backend.render(TestProjects.sameNamedTypes(5), target);
+            final byte[] content = Files.readAllBytes(target);
+            Files.setLastModifiedTime(target, old);
+            backend.render(TestProjects.sameNamedTypes(5), target);
+            assertEquals(format, old, Files.getLastModifiedTime(target));
+
+            // same size, another document: the fingerprints differ
+            backend.render(new Project("same-names", "1.1", TestProjects.sameNamedTypes(5).getResources()), target);
+            assertNotEquals(format, old, Files.getLastModifiedTime(target));
+            assertEquals(format, content.length, Files.size(target));
+        }
+    }
+
+    @Test
+    public void unchangedOutputIsNotRewritten() throws IOException {
+        final Path root = temporaryFolder.newFolder().toPath();
+        final Path target = root.resolve("swagger.json");
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        assertKeepsUnchangedOutput(target, project -> backend.render(project, target));
+
+        final Path compositeTarget = root.resolve("composite/swagger.json");
+        final EnrichedCompositeBackend composite = new EnrichedCompositeBackend();
+        composite.configure(singletonMap(EnrichedCompositeBackend.COMPOSITE_OUTPUTS, "swagger=" + compositeTarget));
+        assertKeepsUnchangedOutput(compositeTarget, composite::render);
+    }
+
+    @Test
+    public void metricsReachTheListenersAndTheReport() throws IOException {
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final Path report = directory.resolve("metrics/swagger-metrics.json");
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_METRICS_REPORT, report.toString()));
+        final List<SwaggerRenderMetrics> metrics = new ArrayList<>();
+        backend.addRenderListener(metrics::add);
+        backend.addRenderListener(m -> {
+            throw new IllegalStateException("a failing listener does not fail the render");
+        });
+
+        final byte[] output = backend.render(TestProjects.sameNamedTypes(5));
+        assertEquals(1, metrics.size());
+        assertEquals("same-names", metrics.get(0).getProjectName());
+        assertEquals(5, metrics.get(0).getPathsRendered());
+        assertEquals(output.length, metrics.get(0).getBytesWritten());
+
+        final JsonObject written = read(Files.readAllBytes(report));
+        assertEquals(metrics.get(0).toJson(), written);
+
+        // replaced, without leaving the temporary file
+        backend.render(TestProjects.sameNamedTypes(7));
+        assertEquals(2, metrics.size());
+        assertEquals(7, read(Files.readAllBytes(report)).getInt("pathsRendered"));
+        try (final Stream<Path> files = Files.list(report.getParent())) {
+            assertEquals(singletonList(report), files.collect(toList()));
+        }
+    }
+
+    @Test
+    public void schemaCountersArePerRender() throws Exception {
+        final Project small = TestProjects.sameNamedTypes(5);
+        final Project big = TestProjects.sameNamedTypes(50);
+        final SwaggerRenderMetrics smallAlone = renderMetrics(new EnrichedSwaggerBackend(), small);
+        final SwaggerRenderMetrics bigAlone = renderMetrics(new EnrichedSwaggerBackend(), big);
+        // each Dto is the child of another one and the response of a path
+        assertTrue(smallAlone.getSchemasBuilt() >= 5);
+        assertTrue(smallAlone.getSchemaCacheHits() > 0);
+        assertTrue(bigAlone.getSchemaCacheHits() > smallAlone.getSchemaCacheHits());
+
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<SwaggerRenderMetrics>> renders = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final Project project = i % 2 == 0 ? small : big;
+                renders.add(executor.submit(() -> renderMetrics(backend, project)));
+            }
+            for (int i = 0; i < renders.size(); i++) {
+                final SwaggerRenderMetrics expected = i % 2 == 0 ? smallAlone : bigAlone;
+                final SwaggerRenderMetrics metrics = renders.get(i).get();
+                assertEquals(expected.getSchemasBuilt(), metrics.getSchemasBuilt());
+                assertEquals(expected.getSchemaCacheHits(), metrics.getSchemaCacheHits());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // the listener is called by the rendering thread
+    private static SwaggerRenderMetrics renderMetrics(final EnrichedSwaggerBackend backend, final Project project) {
+        final Thread renderingThread = Thread.currentThread();
+        final List<SwaggerRenderMetrics> metrics = new ArrayList<>();
+        final SwaggerRenderListener listener = m -> {
+            if (Thread.currentThread() == renderingThread) {
+                metrics.add(m);
+            }
+        };
+        backend.addRenderListener(listener);
+        try {
+            backend.render(project);
+        } finally {
+            backend.removeRenderListener(listener);
+        }
+        assertEquals(1, metrics.size());
+        return metrics.get(0);
+    }
+
+    @Test
+    public void failedAtomicRenderKeepsThePreviousFile() throws IOException {
+        final Path root = temporaryFolder.newFolder().toPath();
+        final Path target = root.resolve("swagger.json");
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.render(TestProjects.sameNamedTypes(5), target);
+        final byte[] previous = Files.readAllBytes(target);
+
+        // fails once most of the paths are written
+        final Project failing = TestProjects.sameNamedTypes(200);
+        failing.getResources().addMethod("zzz", new ResourceMethod(HttpMethod.GET, null) {
+            @Override
+            public String getDescription() {
+                throw new IllegalStateException("failing method");
+            }
+        });
+        try {
+            backend.render(failing, target);
+            fail("the render should fail");
+        } catch (final IllegalStateException e) {
+            assertEquals("failing method", e.getMessage());
+        }
+        assertArrayEquals(previous, Files.readAllBytes(target));
+        try (final Stream<Path> files = Files.list(root)) {
+            assertEquals(singletonList(target), files.collect(toList()));
+        }
+    }
+
+    @Test
+    public void shardsAreTheDocument() throws IOException {
+        final Project project = TestProjects.sameNamedTypes(30);
+        final JsonObject full = read(new EnrichedSwaggerBackend().render(project));
+
+        final Path shards = temporaryFolder.newFolder().toPath().resolve("shards");
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_SHARDS, shards.toString()));
+        final JsonObject manifest = read(backend.render(project));
+        assertEquals(manifest, read(Files.readAllBytes(shards.resolve("index.json"))));
+        assertTrue(manifest.getJsonObject("shards").size() > 1);
+
+        final JsonObjectBuilder paths = Json.createObjectBuilder();
+        final Map<String, JsonValue> definitions = new HashMap<>();
+        for (final JsonValue file : manifest.getJsonObject("shards").values()) {
+            final JsonObject shard = read(Files.readAllBytes(shards.resolve(((JsonString) file).getString())));
+            // the other members are the ones of the document, only the sections are the ones of the shard
+            full.forEach((key, value) -> {
+                if (!asList("paths", "definitions", "x-restlet").contains(key)) {
+                    assertEquals(key, value, shard.get(key));
+                }
+            });
+            shard.getJsonObject("paths").forEach((path, value) -> {
+                assertEquals(path, file, manifest.getJsonObject("paths").get(path));
+                paths.add(path, value);
+            });
+            // each shard is a valid document: the definitions it references, and only them
+            assertEquals(SwaggerDefinitionCompactor.findReferences(shard.getJsonObject("paths").values(),
+                    full.getJsonObject("definitions")), shard.getJsonObject("definitions").keySet());
+            shard.getJsonObject("definitions").forEach((name, value) -> {
+                final JsonValue previous = definitions.put(name, value);
+                assertTrue(name, previous == null || previous.equals(value));
+            });
+        }
+        assertEquals(full.getJsonObject("paths"), paths.build());
+        final JsonObjectBuilder mergedDefinitions = Json.createObjectBuilder();
+        definitions.forEach(mergedDefinitions::add);
+        assertEquals(full.getJsonObject("definitions"), mergedDefinitions.build());
+    }
+
+    @Test
+    public void shardsOfThePreviousRenderAreDeleted() throws IOException {
+        final Path shards = temporaryFolder.newFolder("shards").toPath();
+        // files the backend does not own, even with a shard extension
+        Files.write(shards.resolve("package.json"), "{}".getBytes(UTF_8));
+        Files.write(shards.resolve("notes.cbor"), new byte[] {(byte) 0xA0});
+        Files.write(shards.resolve("notes.txt"), "not a shard".getBytes(UTF_8));
+
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_SHARDS, shards.toString()));
+        final JsonObject previous = read(backend.render(TestProjects.sameNamedTypes(30)));
+        assertTrue(Files.exists(shards.resolve(previous.getJsonObject("shards").getString("Resource0029"))));
+        final JsonObject manifest = read(backend.render(TestProjects.sameNamedTypes(20)));
+
+        final Set<String> expected = new HashSet<>();
+        manifest.getJsonObject("shards").values().forEach(file -> expected.add(((JsonString) file).getString()));
+        assertEquals(20, expected.size());
+        expected.addAll(asList("index.json", "package.json", "notes.cbor", "notes.txt"));
+        try (final Stream<Path> files = Files.list(shards)) {
+            assertEquals(expected, files.map(file -> file.getFileName().toString()).collect(toSet()));
+        }
+    }
+
+    @Test
+    public void outputInTheShardsDirectoryIsRejected() throws IOException {
+        final Path shards = temporaryFolder.newFolder("shards").toPath();
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_SHARDS, shards.toString()));
+        for (final Path target : asList(shards.resolve("swagger.json"), shards.resolve("nested/swagger.json"))) {
+            try {
+                backend.render(TestProjects.sameNamedTypes(3), target, false);
+                fail(target.toString());
+            } catch (final IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("swaggerShards"));
+            }
+        }
+        try (final Stream<Path> files = Files.list(shards)) {
+            assertEquals(0, files.count());
+        }
+
+        backend.render(TestProjects.sameNamedTypes(3), shards.resolveSibling("swagger.json"), false);
+        assertTrue(Files.exists(shards.resolve("index.json")));
+    }
+
+    private static void assertKeepsUnchangedOutput(final Path target, final Consumer<Project> render) throws IOException {
+        final FileTime old = FileTime.fromMillis(0);
+        render.accept(TestProjects.sameNamedTypes(5));
+        final byte[] content = Files.readAllBytes(target);
+        Files.setLastModifiedTime(target, old);
+
+        render.accept(TestProjects.sameNamedTypes(5));
+        assertEquals(old, Files.getLastModifiedTime(target));
+        assertArrayEquals(content, Files.readAllBytes(target));
+
+        render.accept(TestProjects.sameNamedTypes(6));
+        assertNotEquals(old, Files.getLastModifiedTime(target));
+        assertEquals(6, read(Files.readAllBytes(target)).getJsonObject("paths").size());
+    }
+
+    private static ResourceMethod method(final HttpMethod httpMethod, final String mediaType, final TypeIdentifier response) {
+        final ResourceMethod method = new ResourceMethod(httpMethod, null);
+        method.getResponseMediaTypes().add(mediaType);
+        method.getResponses().put(200, new Response(response));
+        return method;
+    }
+
+    private static void assertBuildsWithProvider(final Runnable task) {
+        final int builders = CountingJsonProvider.BUILDERS.get();
+        task.run();
+        assertTrue(CountingJsonProvider.BUILDERS.get() > builders);
+    }
+
+    private static void assertNoDuplicateKeys(final byte[] json) {
+        final Deque<Set<String>> keys = new ArrayDeque<>();
+        try (final JsonParser parser = Json.createParser(new ByteArrayInputStream(json))) {
+            while (parser.hasNext()) {
+                switch (parser.next()) {
+                case START_OBJECT:
+                    keys.push(new HashSet<>());
+                    break;
+                case END_OBJECT:
+                    keys.pop();
+                    break;
+                case KEY_NAME:
+                    assertTrue("duplicated " + parser.getString(), keys.peek().add(parser.getString()));
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+    }
+
+    static String responseRef(final JsonObject swagger, final String path) {
+        return swagger.getJsonObject("paths").getJsonObject(path).getJsonObject("get").getJsonObject("responses")
+                .getJsonObject("200").getJsonObject("schema").getString("$ref");
+    }
+}
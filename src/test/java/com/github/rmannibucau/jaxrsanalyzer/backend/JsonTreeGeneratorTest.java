@@ -0,0 +1,58 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.read;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.function.Consumer;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.stream.JsonGenerationException;
+import javax.json.stream.JsonGenerator;
+
+import org.junit.Test;
+
+public class JsonTreeGeneratorTest {
+
+    @Test
+    public void treeIsTheParsedOutput() {
+        final JsonObject schema = Json.createObjectBuilder().add("$ref", "#/definitions/Foo").build();
+        final Consumer<JsonGenerator> writer = generator -> generator.writeStartObject()
+                .write("string", "value").write("int", 1).write("long", Long.MAX_VALUE)
+                .write("bigInteger", new BigInteger("123456789012345678901234567890"))
+                .write("bigDecimal", new BigDecimal("12.5")).write("true", true).write("false", false).writeNull("null")
+                .write("schema", schema)
+                .writeStartArray("array")
+                    .write("item").write(2).write(3L).write(BigInteger.TEN).write(BigDecimal.ONE).write(false).writeNull()
+                    .write(schema)
+                    .writeStartObject().writeKey("key").write("keyed").writeEnd()
+                    .writeStartArray().writeEnd()
+                .writeEnd()
+                .writeStartObject("nested").writeKey("array").writeStartArray().write(1).writeEnd().writeEnd()
+                .writeEnd();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = Json.createGenerator(output)) {
+            writer.accept(generator);
+        }
+        final JsonTreeGenerator tree = new JsonTreeGenerator(Json.createBuilderFactory(null));
+        writer.accept(tree);
+        tree.close();
+
+        assertEquals(read(output.toByteArray()), tree.getValue());
+        assertEquals(output.size(), tree.getSize());
+    }
+
+    @Test(expected = JsonGenerationException.class)
+    public void namedValueInAnArray() {
+        new JsonTreeGenerator(Json.createBuilderFactory(null)).writeStartArray().write("name", "value");
+    }
+
+    @Test(expected = JsonGenerationException.class)
+    public void incompleteDocument() {
+        new JsonTreeGenerator(Json.createBuilderFactory(null)).writeStartObject().close();
+    }
+}
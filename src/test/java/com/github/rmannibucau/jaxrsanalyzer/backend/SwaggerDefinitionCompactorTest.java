@@ -0,0 +1,90 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.junit.Test;
+
+public class SwaggerDefinitionCompactorTest {
+
+    private static final JsonObject DOCUMENT = TestProjects.read(("{"
+            + "'paths':{"
+            + "'/a':{'get':{'schema':{'$ref':'#/definitions/Foo_2'}}},"
+            + "'/b':{'get':{'schema':{'$ref':'#/definitions/Bar'}}},"
+            + "'/c':{'get':{'schema':{'$ref':'#/definitions/Foo'}}},"
+            + "'/d':{'get':{'schema':{'$ref':'#/definitions/Baz_2'}}},"
+            + "'/e':{'get':{'schema':{'$ref':'#/definitions/Baz'}}},"
+            + "'/f':{'get':{'schema':{'$ref':'#/definitions/Node_2'}}}"
+            + "},"
+            + "'definitions':{"
+            + "'Bar':{'properties':{'value':{'type':'string'}}},"
+            + "'Baz':{'properties':{'value':{'type':'string'}}},"
+            + "'Baz_2':{'properties':{'value':{'type':'integer'}}},"
+            + "'Foo':{'properties':{'value':{'type':'string'}}},"
+            + "'Foo_2':{'properties':{'value':{'type':'string'}}},"
+            + "'Node':{'properties':{'next':{'$ref':'#/definitions/Node'}}},"
+            + "'Node_2':{'properties':{'next':{'$ref':'#/definitions/Node_2'}}},"
+            + "'Unused':{'properties':{'value':{'type':'string'}}}"
+            + "}}").replace('\'', '"').getBytes(UTF_8));
+
+    @Test
+    public void mergesSameNamedDefinitionsOnly() {
+        final JsonObject compacted = new SwaggerDefinitionCompactor(Json.createBuilderFactory(null),
+                name -> name.replaceFirst("_\\d+$", "")).compact(DOCUMENT);
+
+        assertEquals(new HashSet<>(asList("Bar", "Baz", "Baz_2", "Foo", "Node")),
+                compacted.getJsonObject("definitions").keySet());
+        assertEquals("#/definitions/Foo", ref(compacted, "/a"));
+        assertEquals("#/definitions/Bar", ref(compacted, "/b")); // same structure as Foo but another type
+        assertEquals("#/definitions/Foo", ref(compacted, "/c"));
+        assertEquals("#/definitions/Baz_2", ref(compacted, "/d")); // same name but another structure
+        assertEquals("#/definitions/Node", ref(compacted, "/f"));
+        assertEquals("#/definitions/Node", compacted.getJsonObject("definitions").getJsonObject("Node")
+                .getJsonObject("properties").getJsonObject("next").getString("$ref"));
+    }
+
+    @Test
+    public void mergesAcrossNamesWhenRequested() {
+        final JsonObject compacted = new SwaggerDefinitionCompactor(Json.createBuilderFactory(null), name -> "")
+                .compact(DOCUMENT);
+
+        // the canonical name is the first one in sorted order
+        assertEquals(new HashSet<>(asList("Bar", "Baz_2", "Node")), compacted.getJsonObject("definitions").keySet());
+        assertEquals("#/definitions/Bar", ref(compacted, "/a"));
+        assertEquals("#/definitions/Bar", ref(compacted, "/b"));
+        assertEquals("#/definitions/Bar", ref(compacted, "/c"));
+        assertEquals("#/definitions/Baz_2", ref(compacted, "/d"));
+        assertEquals("#/definitions/Bar", ref(compacted, "/e"));
+        assertEquals("#/definitions/Node", ref(compacted, "/f"));
+    }
+
+    @Test
+    public void keepsCanonicalDefinitionsOnlyReachedThroughAnAlias() {
+        // /a returning Bar was removed by a patch, Foo references the other Bar
+        final JsonObject document = TestProjects.read(("{"
+                + "'paths':{'/b':{'get':{'schema':{'$ref':'#/definitions/Foo'}}}},"
+                + "'definitions':{"
+                + "'Bar':{'properties':{'value':{'type':'string'}}},"
+                + "'Bar_2':{'properties':{'value':{'type':'string'}}},"
+                + "'Foo':{'properties':{'bar':{'$ref':'#/definitions/Bar_2'}}}"
+                + "}}").replace('\'', '"').getBytes(UTF_8));
+        final JsonObject compacted = new SwaggerDefinitionCompactor(Json.createBuilderFactory(null),
+                name -> name.replaceFirst("_\\d+$", "")).compact(document);
+
+        final JsonObject definitions = compacted.getJsonObject("definitions");
+        assertEquals(new HashSet<>(asList("Bar", "Foo")), definitions.keySet());
+        assertEquals("#/definitions/Bar", definitions.getJsonObject("Foo").getJsonObject("properties")
+                .getJsonObject("bar").getString("$ref"));
+    }
+
+    private static String ref(final JsonObject document, final String path) {
+        return document.getJsonObject("paths").getJsonObject(path).getJsonObject("get").getJsonObject("schema")
+                .getString("$ref");
+    }
+}
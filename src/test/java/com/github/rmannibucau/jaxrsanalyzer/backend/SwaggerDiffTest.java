@@ -0,0 +1,206 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.read;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.Json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.HttpMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Response;
+
+public class SwaggerDiffTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void suffixShiftIsNotBreaking() throws IOException {
+        // a new com.a.Foo takes the Foo name, the previous Foo and Foo_2 are shifted
+        final SwaggerDiff diff = compare(""
+                + "{'paths':{'/x':{'post':{'parameters':[{'in':'body','name':'body','schema':{'$ref':'#/definitions/Foo_2'}}]}}},"
+                + "'definitions':{"
+                + "'Foo':{'properties':{'a':{'type':'string'}}},"
+                + "'Foo_2':{'properties':{'b':{'type':'integer'},'next':{'$ref':'#/definitions/Foo_2'}}},"
+                + "'Holder':{'properties':{'foo':{'$ref':'#/definitions/Foo'}}}}}", ""
+                + "{'paths':{'/x':{'post':{'parameters':[{'in':'body','name':'body','schema':{'$ref':'#/definitions/Foo_3'}}]}}},"
+                + "'definitions':{"
+                + "'Foo':{'properties':{'c':{'type':'boolean'}}},"
+                + "'Foo_2':{'properties':{'a':{'type':'string'}}},"
+                + "'Foo_3':{'properties':{'b':{'type':'integer'},'next':{'$ref':'#/definitions/Foo_3'}}},"
+                + "'Holder':{'properties':{'foo':{'$ref':'#/definitions/Foo_2'}}}}}");
+        assertFalse(diff.getBreakingChanges().toString(), diff.isBreaking());
+        assertFalse(diff.getOperations().isEmpty());
+    }
+
+    @Test
+    public void removedSuffixedType() throws IOException {
+        final SwaggerDiff diff = compare(""
+                + "{'definitions':{"
+                + "'Foo':{'properties':{'a':{'type':'string'}}},"
+                + "'Foo_2':{'properties':{'b':{'type':'integer'}}}}}", ""
+                + "{'definitions':{"
+                + "'Foo':{'properties':{'a':{'type':'string'}}}}}");
+        assertEquals(1, diff.getBreakingChanges().size());
+        assertEquals(SwaggerDiff.ChangeType.DEFINITION_REMOVED, diff.getBreakingChanges().get(0).getType());
+        assertEquals("/definitions/Foo_2", diff.getBreakingChanges().get(0).getPointer());
+    }
+
+    @Test
+    public void nameTakenByAnotherType() throws IOException {
+        // the first Foo was removed and the second one took its name
+        final SwaggerDiff diff = compare(""
+                + "{'definitions':{"
+                + "'Foo':{'properties':{'a':{'type':'string'}}},"
+                + "'Foo_2':{'properties':{'a':{'type':'integer'}}}}}", ""
+                + "{'definitions':{"
+                + "'Foo':{'properties':{'a':{'type':'integer'}}}}}");
+        assertEquals(1, diff.getBreakingChanges().size());
+        assertEquals(SwaggerDiff.ChangeType.DEFINITION_REMOVED, diff.getBreakingChanges().get(0).getType());
+        assertEquals("/definitions/Foo", diff.getBreakingChanges().get(0).getPointer());
+    }
+
+    @Test
+    public void propertyTypeChange() throws IOException {
+        final SwaggerDiff diff = compare(""
+                + "{'definitions':{'Foo':{'properties':{'a':{'type':'string'}}}}}", ""
+                + "{'definitions':{'Foo':{'properties':{'a':{'type':'integer'}}}}}");
+        assertEquals(1, diff.getBreakingChanges().size());
+        assertEquals(SwaggerDiff.ChangeType.PROPERTY_TYPE_CHANGED, diff.getBreakingChanges().get(0).getType());
+        assertEquals("/definitions/Foo/properties/a", diff.getBreakingChanges().get(0).getPointer());
+    }
+
+    @Test
+    public void requiredParameters() throws IOException {
+        final SwaggerDiff diff = compare(""
+                + "{'paths':{'/x':{'get':{'parameters':["
+                + "{'in':'query','name':'a','type':'string'},"
+                + "{'in':'query','name':'b','type':'string'}]}}}}", ""
+                + "{'paths':{'/x':{'get':{'parameters':["
+                + "{'in':'header','name':'c','type':'string','required':true},"
+                + "{'in':'query','name':'a','type':'string'},"
+                + "{'in':'query','name':'b','type':'string','required':true}]}}}}");
+        assertEquals(2, diff.getBreakingChanges().size());
+        // a new parameter only has an index in the current document, an existing one keeps its previous index
+        assertEquals("/paths/~1x/get/parameters/0", diff.getBreakingChanges().get(0).getPointer());
+        assertEquals("/paths/~1x/get/parameters/1", diff.getBreakingChanges().get(1).getPointer());
+        diff.getBreakingChanges().forEach(change ->
+                assertEquals(SwaggerDiff.ChangeType.PARAMETER_REQUIRED, change.getType()));
+    }
+
+    @Test
+    public void operationsTurnThePreviousDocumentIntoTheCurrentOne() throws IOException {
+        assertRoundTrip(""
+                + "{'swagger':'2.0','host':'a','paths':{"
+                + "'/a':{'get':{'parameters':[{'in':'query','name':'q','type':'string'}]}},"
+                + "'/b':{'get':{},'post':{}},"
+                + "'/c':{'delete':{}}},"
+                + "'definitions':{"
+                + "'Foo':{'properties':{'a':{'type':'string'}}},"
+                + "'Foo_2':{'properties':{'b':{'type':'integer'}}},"
+                + "'Holder':{'properties':{'foo':{'$ref':'#/definitions/Foo_2'}}}}}", ""
+                + "{'swagger':'2.0','basePath':'/api','paths':{"
+                + "'/a':{'get':{'parameters':[{'in':'header','name':'h','type':'string'},"
+                + "{'in':'query','name':'q','type':'integer'}]}},"
+                + "'/aa':{'put':{}},"
+                + "'/b':{'post':{}}},"
+                + "'definitions':{"
+                + "'Bar':{'properties':{}},"
+                + "'Foo':{'properties':{'c':{'type':'boolean'}}},"
+                + "'Foo_2':{'properties':{'a':{'type':'string'}}},"
+                + "'Foo_3':{'properties':{'b':{'type':'integer'}}},"
+                + "'Holder':{'properties':{'foo':{'$ref':'#/definitions/Foo_3'}}}}}");
+        // members appearing or disappearing
+        assertRoundTrip("{'swagger':'2.0'}", "{'swagger':'2.0','paths':{'/a':{'get':{}}},'definitions':{'A':{}}}");
+        assertRoundTrip("{'swagger':'2.0','paths':{'/a':{'get':{}}},'definitions':{'A':{}}}", "{'swagger':'2.0'}");
+    }
+
+    @Test
+    public void unsortedMembersAreComparedInMemory() throws IOException {
+        // entries appended by a jsonPatch are not in the sorted order
+        final String previous = ""
+                + "{'paths':{'/b':{'get':{}},'/c':{'get':{}},'/a':{'get':{}}},"
+                + "'definitions':{'B':{'properties':{'b':{'type':'string'}}},'A':{'properties':{}}}}";
+        final String current = ""
+                + "{'paths':{'/a':{'get':{}},'/c':{'get':{}},'/d':{'get':{}}},"
+                + "'definitions':{'C':{'properties':{}},'B':{'properties':{'b':{'type':'integer'}}},'A':{'properties':{}}}}";
+        final SwaggerDiff diff = assertRoundTrip(previous, current);
+        assertEquals(2, diff.getBreakingChanges().size());
+        assertEquals(SwaggerDiff.ChangeType.PATH_REMOVED, diff.getBreakingChanges().get(0).getType());
+        assertEquals("/paths/~1b", diff.getBreakingChanges().get(0).getPointer());
+        assertEquals(SwaggerDiff.ChangeType.PROPERTY_TYPE_CHANGED, diff.getBreakingChanges().get(1).getType());
+        assertEquals("/definitions/B/properties/b", diff.getBreakingChanges().get(1).getPointer());
+    }
+
+    @Test
+    public void renderedProjects() throws IOException {
+        final Project previous = TestProjects.sameNamedTypes(5);
+        final Resources resources = TestProjects.sameNamedTypes(4).getResources();
+        final ResourceMethod method = new ResourceMethod(HttpMethod.GET, null);
+        method.getResponses().put(200, new Response(TestProjects.STRING));
+        resources.addMethod("aaa", method);
+        final Project current = new Project("same-names", "1.0", resources);
+
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        final SwaggerDiff diff = SwaggerDiff.compare(backend, previous, current);
+        assertEquals(SwaggerDiff.ChangeType.PATH_REMOVED, diff.getBreakingChanges().get(0).getType());
+        assertEquals("/paths/~1resource0004", diff.getBreakingChanges().get(0).getPointer());
+        assertEquals(read(backend.render(current)),
+                Json.createPatch(diff.getOperations()).apply(read(backend.render(previous))));
+
+        assertFalse(SwaggerDiff.compare(backend, previous, TestProjects.sameNamedTypes(5)).isBreaking());
+        assertTrue(SwaggerDiff.compare(backend, previous, TestProjects.sameNamedTypes(5)).getOperations().isEmpty());
+    }
+
+    @Test
+    public void binaryOrShardedBackendsAreRejected() throws IOException {
+        final Map<String, Map<String, String>> configs = new HashMap<>();
+        configs.put("format", singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_OUTPUT_FORMAT, "cbor"));
+        configs.put("shards", singletonMap(EnrichedSwaggerBackend.SwaggerOptions.SWAGGER_SHARDS,
+                temporaryFolder.newFolder().toString()));
+        configs.forEach((name, config) -> {
+            final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+            backend.configure(config);
+            try {
+                SwaggerDiff.compare(backend, TestProjects.sameNamedTypes(2), TestProjects.sameNamedTypes(3));
+                fail(name);
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        });
+    }
+
+    private SwaggerDiff assertRoundTrip(final String previous, final String current) throws IOException {
+        final SwaggerDiff diff = compare(previous, current);
+        assertEquals(read(current.replace('\'', '"').getBytes(UTF_8)),
+                Json.createPatch(diff.getOperations()).apply(read(previous.replace('\'', '"').getBytes(UTF_8))));
+        return diff;
+    }
+
+    private SwaggerDiff compare(final String previous, final String current) throws IOException {
+        return SwaggerDiff.compare(write(previous), write(current));
+    }
+
+    private Path write(final String json) throws IOException {
+        final Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, json.replace('\'', '"').getBytes(UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static com.github.rmannibucau.jaxrsanalyzer.backend.TestProjects.read;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.junit.Test;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.HttpMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Response;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeIdentifier;
+
+public class SwaggerLazyDocumentTest {
+
+    @Test
+    public void fragmentsAreTheFullRender() {
+        final Project project = TestProjects.sameNamedTypes(30);
+        final JsonObject full = read(new EnrichedSwaggerBackend().render(project));
+
+        // paths met in the document order name the types like the full render
+        final SwaggerLazyDocument document = new EnrichedSwaggerBackend().openLazyDocument(project, 1 << 20);
+        assertEquals(new ArrayList<>(full.getJsonObject("paths").keySet()), new ArrayList<>(document.getPaths()));
+        full.getJsonObject("paths").forEach((path, value) -> assertEquals(path, value, readValue(document.getPath(path))));
+        full.getJsonObject("definitions").forEach((name, value) ->
+                assertEquals(name, value, readValue(document.getDefinition(name))));
+        assertNull(document.getPath("/missing"));
+        assertNull(document.getDefinition("Missing"));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.render(output);
+        assertEquals(full, read(output.toByteArray()));
+    }
+
+    @Test
+    public void namesDoNotDependOnTheRequestOrder() {
+        final Project project = TestProjects.sameNamedTypes(30);
+        final byte[] full = new EnrichedSwaggerBackend().render(project);
+        final JsonObject fullJson = read(full);
+
+        // the last path first: it meets the types in another order than the document
+        final SwaggerLazyDocument document = new EnrichedSwaggerBackend().openLazyDocument(project, 1 << 20);
+        final List<String> paths = new ArrayList<>(document.getPaths());
+        Collections.reverse(paths);
+        paths.forEach(path -> assertEquals(path, fullJson.getJsonObject("paths").get(path), readValue(document.getPath(path))));
+        final List<String> definitions = new ArrayList<>(fullJson.getJsonObject("definitions").keySet());
+        Collections.reverse(definitions);
+        definitions.forEach(name -> assertEquals(name, fullJson.getJsonObject("definitions").get(name),
+                readValue(document.getDefinition(name))));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.render(output);
+        assertArrayEquals(full, output.toByteArray());
+    }
+
+    @Test
+    public void concurrentFragmentsAreTheFullRender() throws Exception {
+        for (final Project project : asList(TestProjects.sameNamedTypes(30), TestProjects.deepCycle(20))) {
+            final JsonObject full = read(new EnrichedSwaggerBackend().render(project));
+            // nothing is cached, every request renders its fragment from the names only
+            final SwaggerLazyDocument document = new EnrichedSwaggerBackend().openLazyDocument(project, 0);
+            final List<Callable<Void>> requests = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                requests.add(() -> {
+                    full.getJsonObject("paths").forEach((path, value) ->
+                            assertEquals(path, value, readValue(document.getPath(path))));
+                    full.getJsonObject("definitions").forEach((name, value) ->
+                            assertEquals(name, value, readValue(document.getDefinition(name))));
+                    return null;
+                });
+            }
+            final ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                for (final Future<Void> request : executor.invokeAll(requests)) {
+                    request.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(0, document.getCacheSize());
+        }
+    }
+
+    @Test
+    public void definitionOnlyBuildsTheTypesItReferences() {
+        final Resources resources = new Resources();
+        final TypeIdentifier leaf = TestProjects.addType(resources, "Lcom/app/Leaf;");
+        final TypeIdentifier root = TestProjects.addType(resources, "Lcom/app/Root;", singletonMap("leaf", leaf));
+        for (final TypeIdentifier type : asList(root, TestProjects.addType(resources, "Lcom/app/Other;"))) {
+            final ResourceMethod method = new ResourceMethod(HttpMethod.GET, null) {
+                @Override
+                public String getDescription() {
+                    throw new AssertionError("the path is rendered");
+                }
+            };
+            method.getResponses().put(200, new Response(type));
+            resources.addMethod(type.getName(), method);
+        }
+
+        final SwaggerLazyDocument document = new EnrichedSwaggerBackend()
+                .openLazyDocument(new Project("lazy", "1", resources), 1 << 20);
+        assertNull(document.getDefinition("Missing"));
+        assertEquals("#/definitions/Leaf", ((JsonObject) readValue(document.getDefinition("Root")))
+                .getJsonObject("properties").getJsonObject("leaf").getString("$ref"));
+        assertEquals(Json.createObjectBuilder().build(), ((JsonObject) readValue(document.getDefinition("Leaf")))
+                .getJsonObject("properties"));
+    }
+
+    @Test
+    public void cacheEvictsTheLeastRecentlyUsedBySize() {
+        final CountingSource source = new CountingSource(10);
+        final SwaggerLazyDocument document = new SwaggerLazyDocument(source, 25);
+        document.getPath("/a");
+        document.getPath("/b");
+        assertEquals(20, document.getCacheSize());
+        document.getPath("/a"); // /b is now the eldest
+        assertEquals(asList("/a", "/b"), source.rendered);
+
+        document.getPath("/c");
+        assertEquals(20, document.getCacheSize());
+        document.getPath("/a");
+        document.getPath("/c");
+        assertEquals(asList("/a", "/b", "/c"), source.rendered);
+        document.getPath("/b");
+        assertEquals(asList("/a", "/b", "/c", "/b"), source.rendered);
+        assertEquals(20, document.getCacheSize());
+    }
+
+    @Test
+    public void biggerFragmentsAreNotCached() {
+        final CountingSource source = new CountingSource(30);
+        final SwaggerLazyDocument document = new SwaggerLazyDocument(source, 25);
+        document.getPath("/a");
+        document.getPath("/a");
+        assertEquals(asList("/a", "/a"), source.rendered);
+        assertEquals(0, document.getCacheSize());
+    }
+
+    @Test
+    public void fragmentsAreCopies() {
+        final SwaggerLazyDocument document = new SwaggerLazyDocument(new CountingSource(10), 100);
+        final byte[] first = document.getPath("/a");
+        final byte[] expected = first.clone();
+        first[0] = 'x';
+        assertArrayEquals(expected, document.getPath("/a"));
+        document.getPath("/a")[0] = 'x';
+        assertArrayEquals(expected, document.getPath("/a"));
+    }
+
+    private static JsonValue readValue(final byte[] fragment) {
+        return read(("{\"value\":" + new String(fragment, UTF_8) + '}').getBytes(UTF_8)).get("value");
+    }
+
+    // renders each path as a string of the given size
+    private static class CountingSource implements SwaggerLazyDocument.Source {
+
+        private final int fragmentSize;
+
+        private final List<String> rendered = new ArrayList<>();
+
+        private CountingSource(final int fragmentSize) {
+            this.fragmentSize = fragmentSize;
+        }
+
+        @Override
+        public Collection<String> getPaths() {
+            return singletonList("/a");
+        }
+
+        @Override
+        public JsonValue renderPathFragment(final String path) {
+            rendered.add(path);
+            final StringBuilder value = new StringBuilder(path);
+            while (value.length() < fragmentSize) {
+                value.append('-');
+            }
+            return Json.createValue(value.toString());
+        }
+
+        @Override
+        public JsonValue renderDefinitionFragment(final String name) {
+            return null;
+        }
+
+        @Override
+        public byte[] toBytes(final JsonValue value) {
+            return ((JsonString) value).getString().getBytes(UTF_8);
+        }
+
+        @Override
+        public void renderDocument(final OutputStream output) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
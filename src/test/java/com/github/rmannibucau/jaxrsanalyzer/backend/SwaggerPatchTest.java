@@ -0,0 +1,202 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonGenerator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+
+public class SwaggerPatchTest {
+
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+
+    private static final JsonBuilderFactory BUILDERS = PROVIDER.createBuilderFactory(emptyMap());
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readMergesFilesAndSortedDirectoryEntries() throws IOException {
+        final Path file = write(temporaryFolder.getRoot().toPath().resolve("first.json"),
+                "[{'op':'add','path':'/host','value':'first'},{'op':'add','path':'/info/title','value':'first'}]");
+        final Path directory = temporaryFolder.newFolder("patches").toPath();
+        write(directory.resolve("b.json"), "[{'op':'add','path':'/basePath','value':'/b'}]");
+        write(directory.resolve("a.json"), "[{'op':'replace','path':'/info/title','value':'a'}]");
+        write(directory.resolve("c.txt"), "[{'op':'remove','path':'/host'}]"); // not a patch
+
+        final SwaggerPatch patch = read(file + ", " + directory);
+        // the title setters are merged, the first operation is kept with the last value
+        assertEquals(toJson("["
+                + "{'op':'add','path':'/host','value':'first'},"
+                + "{'op':'add','path':'/info/title','value':'a'},"
+                + "{'op':'add','path':'/basePath','value':'/b'}]"), patch.getOperations().toString());
+        assertTrue(patch.isStreamable());
+    }
+
+    @Test
+    public void mergesSettersOfTheSamePointer() {
+        assertEquals(toJson("[{'op':'replace','path':'/info/title','value':'c'},{'op':'add','path':'/host','value':'h'}]"),
+                optimize("["
+                        + "{'op':'replace','path':'/info/title','value':'a'},"
+                        + "{'op':'add','path':'/host','value':'h'},"
+                        + "{'op':'add','path':'/info/title','value':'b'},"
+                        + "{'op':'replace','path':'/info/title','value':'c'}]"));
+    }
+
+    @Test
+    public void keepsArrayOperations() {
+        final String operations = "["
+                + "{'op':'add','path':'/schemes/0','value':'http'},"
+                + "{'op':'add','path':'/schemes/0','value':'https'},"
+                + "{'op':'add','path':'/tags/-','value':{'name':'a'}},"
+                + "{'op':'add','path':'/tags/-','value':{'name':'b'}}]";
+        assertEquals(toJson(operations), optimize(operations));
+    }
+
+    @Test
+    public void keepsSettersSeparatedByARelatedOperation() {
+        for (final String related : new String[] {
+                "{'op':'remove','path':'/info/title'}",
+                "{'op':'test','path':'/info/title','value':'a'}",
+                "{'op':'replace','path':'/info','value':{'title':'x'}}",
+                "{'op':'remove','path':'/info/title/nested'}",
+                "{'op':'copy','from':'/info/title','path':'/host'}",
+                "{'op':'move','from':'/info','path':'/x-info'}"}) {
+            final String operations = "["
+                    + "{'op':'add','path':'/info/title','value':'a'},"
+                    + related + ","
+                    + "{'op':'add','path':'/info/title','value':'b'}]";
+            assertEquals(related, toJson(operations), optimize(operations));
+        }
+    }
+
+    @Test
+    public void streamedPatchIsTheTreePatch() throws IOException {
+        final String operations = ""
+                + "{'op':'replace','path':'/info/title','value':'patched'},"
+                + "{'op':'add','path':'/host','value':'api.company.com'},"
+                + "{'op':'add','path':'/paths/~1resource0001/get/summary','value':'first'},"
+                + "{'op':'replace','path':'/paths/~1resource0001/get/summary','value':'second'},"
+                + "{'op':'remove','path':'/paths/~1resource0002'},"
+                + "{'op':'add','path':'/paths/~1added','value':{'get':{'responses':{}}}},"
+                + "{'op':'move','from':'/definitions/Dto_3/properties/value','path':'/definitions/Dto_3/properties/renamed'},"
+                + "{'op':'add','path':'/definitions/Extra','value':{'type':'object'}},"
+                + "{'op':'remove','path':'/definitions/Dto_2/x-restlet'}";
+        final Path streamed = write(temporaryFolder.newFile("streamed.json").toPath(), '[' + operations + ']');
+        // the copy spans the whole paths member so the document is patched as a tree
+        final Path tree = write(temporaryFolder.newFile("tree.json").toPath(),
+                '[' + operations + ",{'op':'copy','from':'/paths','path':'/paths'}]");
+        assertTrue(read(streamed.toString()).isStreamable());
+        assertFalse(read(tree.toString()).isStreamable());
+
+        final Project project = TestProjects.sameNamedTypes(5);
+        final byte[] streamedOutput = render(project, streamed);
+        assertArrayEquals(render(project, tree), streamedOutput);
+
+        final JsonObject swagger = TestProjects.read(streamedOutput);
+        assertEquals("patched", swagger.getJsonObject("info").getString("title"));
+        assertEquals("second", swagger.getJsonObject("paths").getJsonObject("/resource0001").getJsonObject("get")
+                .getString("summary"));
+        assertFalse(swagger.getJsonObject("paths").containsKey("/resource0002"));
+        assertTrue(swagger.getJsonObject("paths").containsKey("/added"));
+        assertTrue(swagger.getJsonObject("definitions").getJsonObject("Dto_3").getJsonObject("properties")
+                .containsKey("renamed"));
+        assertTrue(swagger.getJsonObject("definitions").containsKey("Extra"));
+    }
+
+    @Test
+    public void streamedPatchKeepsTheTreeMemberOrder() throws IOException {
+        final Project project = TestProjects.sameNamedTypes(5);
+        for (final String operations : new String[] {
+                // applied on the tree: the added members go to the end of their object
+                "[{'op':'add','path':'/tags','value':[{'name':'added'}]}]",
+                "[{'op':'remove','path':'/info'},{'op':'add','path':'/info','value':{'title':'moved'}}]",
+                "[{'op':'remove','path':'/paths/~1resource0001'},{'op':'add','path':'/paths/~1resource0001','value':{}}]",
+                "[{'op':'move','from':'/definitions/Dto_2','path':'/definitions/Dto_2'}]",
+                // streamed
+                "[{'op':'replace','path':'/info','value':{'title':'replaced'}}]",
+                "[{'op':'add','path':'/host','value':'api.company.com'},{'op':'remove','path':'/basePath'}]",
+                "[{'op':'add','path':'/paths/~1added','value':{}},{'op':'add','path':'/paths/~1resource0002','value':{}}]",
+                "[{'op':'remove','path':'/definitions/Dto'},{'op':'add','path':'/definitions/Extra','value':{}}]"}) {
+            final Path patch = write(temporaryFolder.newFile().toPath(), operations);
+            assertArrayEquals(operations, applyOnTree(project, operations), render(project, patch));
+        }
+
+        assertFalse(read(write(temporaryFolder.newFile().toPath(),
+                "[{'op':'add','path':'/tags','value':[]}]").toString()).isStreamable());
+        assertTrue(read(write(temporaryFolder.newFile().toPath(),
+                "[{'op':'add','path':'/tags/-','value':{'name':'added'}}]").toString()).isStreamable());
+        assertFalse(read(write(temporaryFolder.newFile().toPath(),
+                "[{'op':'remove','path':'/paths/~1a'},{'op':'add','path':'/paths/~1a','value':{}}]").toString())
+                .isStreamable());
+        assertTrue(read(write(temporaryFolder.newFile().toPath(),
+                "[{'op':'remove','path':'/paths/~1a/get'},{'op':'add','path':'/paths/~1a/get','value':{}}]").toString())
+                .isStreamable());
+    }
+
+    // the document rendered without patch then patched by JSON-P, serialized like the backend does
+    private static byte[] applyOnTree(final Project project, final String operations) {
+        final JsonObject document = TestProjects.read(new EnrichedSwaggerBackend().render(project));
+        final JsonObject patched;
+        try (final JsonReader reader = PROVIDER.createReader(new StringReader(toJson(operations)))) {
+            patched = PROVIDER.createPatch(reader.readArray()).apply(document);
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = PROVIDER.createGeneratorFactory(
+                singletonMap(JsonGenerator.PRETTY_PRINTING, true)).createGenerator(output)) {
+            generator.writeStartObject();
+            patched.forEach(generator::write);
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] render(final Project project, final Path patch) {
+        final EnrichedSwaggerBackend backend = new EnrichedSwaggerBackend();
+        backend.configure(singletonMap(EnrichedSwaggerBackend.SwaggerOptions.JSON_PATCH, patch.toString()));
+        return backend.render(project);
+    }
+
+    private static SwaggerPatch read(final String locations) throws IOException {
+        return SwaggerPatch.read(locations, PROVIDER, BUILDERS, PROVIDER.createReaderFactory(emptyMap()));
+    }
+
+    private static String optimize(final String operations) {
+        final List<JsonObject> parsed = TestProjects.read(("{'operations':" + operations + '}').replace('\'', '"')
+                .getBytes(UTF_8)).getJsonArray("operations").getValuesAs(JsonObject.class);
+        final JsonArrayBuilder optimized = BUILDERS.createArrayBuilder();
+        SwaggerPatch.optimize(parsed, BUILDERS).forEach(optimized::add);
+        return optimized.build().toString();
+    }
+
+    private static String toJson(final String json) {
+        return json.replace('\'', '"');
+    }
+
+    private static Path write(final Path file, final String json) throws IOException {
+        Files.write(file, toJson(json).getBytes(UTF_8));
+        return file;
+    }
+}
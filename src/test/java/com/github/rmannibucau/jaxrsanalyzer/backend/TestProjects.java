@@ -0,0 +1,200 @@
+package com.github.rmannibucau.jaxrsanalyzer.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.HttpMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.MethodParameter;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ParameterType;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Project;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.ResourceMethod;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Resources;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.Response;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeIdentifier;
+import com.sebastian_daschner.jaxrs_analyzer.model.rest.TypeRepresentation;
+
+// analyzed models built by hand, the analyzer itself is not needed to test the backends
+final class TestProjects {
+
+    static final TypeIdentifier STRING = TypeIdentifier.ofType("Ljava/lang/String;");
+
+    private TestProjects() {
+        // no-op
+    }
+
+    /**
+     * @param count the number of packages having a Dto class.
+     * @return a project where each path returns a Dto of another package which references a Dto of a third package.
+     */
+    static Project sameNamedTypes(final int count) {
+        final Resources resources = new Resources();
+        resources.setBasePath("api");
+        final TypeIdentifier[] types = new TypeIdentifier[count];
+        for (int i = 0; i < count; i++) {
+            types[i] = TypeIdentifier.ofType("Lcom/app/p" + i + "/Dto;");
+        }
+        for (int i = 0; i < count; i++) {
+            final Map<String, TypeIdentifier> properties = new HashMap<>();
+            properties.put("value", STRING);
+            properties.put("child", types[(i * 7 + 3) % count]);
+            resources.getTypeRepresentations().put(types[i], TypeRepresentation.ofConcrete(types[i], properties));
+        }
+        for (int i = 0; i < count; i++) {
+            final ResourceMethod method = new ResourceMethod(HttpMethod.GET, null);
+            final MethodParameter parameter = new MethodParameter(STRING, ParameterType.QUERY);
+            parameter.setName("q");
+            method.getMethodParameters().add(parameter);
+            method.getResponses().put(200, new Response(types[(i * 13 + 5) % count]));
+            resources.addMethod(String.format("resource%04d", i), method);
+        }
+        return new Project("same-names", "1.0", resources);
+    }
+
+    /**
+     * @param depth the number of types in the chain.
+     * @return a project returning a chain of types where each type references the next one, itself and the first one.
+     */
+    static Project deepCycle(final int depth) {
+        final Resources resources = new Resources();
+        TypeIdentifier first = null;
+        Map<String, TypeIdentifier> previous = null;
+        for (int i = 0; i < depth; i++) {
+            final TypeIdentifier type = TypeIdentifier.ofType("Lcom/app/deep/Level" + i + ";");
+            if (first == null) {
+                first = type;
+            }
+            final Map<String, TypeIdentifier> properties = new HashMap<>();
+            properties.put("value", STRING);
+            properties.put("root", first);
+            properties.put("self", type);
+            resources.getTypeRepresentations().put(type, TypeRepresentation.ofConcrete(type, properties));
+            if (previous != null) {
+                previous.put("next", type);
+            }
+            previous = properties;
+        }
+        final ResourceMethod method = new ResourceMethod(HttpMethod.GET, null);
+        method.getResponses().put(200, new Response(first));
+        resources.addMethod("deep", method);
+        return new Project("deep", "1.0", resources);
+    }
+
+    /**
+     * @return a project using most of the model: two GET methods on a path, parameters of each kind, request bodies,
+     *         response headers, deprecation, collections, enums, byte arrays and dynamic types.
+     */
+    static Project operations() {
+        final Resources resources = new Resources();
+        resources.setBasePath("api");
+        final TypeIdentifier status = TypeIdentifier.ofType("Lcom/app/Status;");
+        resources.getTypeRepresentations().put(status, TypeRepresentation.ofEnum(status, "OPEN", "CLOSED", "ARCHIVED"));
+        final TypeIdentifier tags = TypeIdentifier.ofType("Ljava/util/List<Ljava/lang/String;>;");
+        resources.getTypeRepresentations().put(tags, TypeRepresentation.ofCollection(tags,
+                TypeRepresentation.ofConcrete(STRING)));
+        final TypeIdentifier bytes = TypeIdentifier.ofType("[B");
+        final Map<String, TypeIdentifier> itemProperties = new HashMap<>();
+        itemProperties.put("name", STRING);
+        itemProperties.put("count", TypeIdentifier.ofType("I"));
+        itemProperties.put("price", TypeIdentifier.ofType("D"));
+        itemProperties.put("active", TypeIdentifier.ofType("Z"));
+        itemProperties.put("status", status);
+        itemProperties.put("tags", tags);
+        itemProperties.put("content", bytes);
+        itemProperties.put("extra", TypeIdentifier.ofDynamic());
+        final TypeIdentifier item = addType(resources, "Lcom/app/Item;", itemProperties);
+        final TypeIdentifier items = TypeIdentifier.ofType("Ljava/util/List<Lcom/app/Item;>;");
+        resources.getTypeRepresentations().put(items, TypeRepresentation.ofCollection(items,
+                resources.getTypeRepresentations().get(item)));
+        final TypeIdentifier error = addType(resources, "Lcom/app/Error;", Collections.singletonMap("message", STRING));
+
+        // same HTTP method and path, only the media types differ
+        final ResourceMethod list = new ResourceMethod(HttpMethod.GET, "Lists the items.");
+        list.getResponseMediaTypes().add("application/json");
+        list.getMethodParameters().add(parameter(ParameterType.QUERY, "size", TypeIdentifier.ofType("I"), "20", "page size"));
+        list.getMethodParameters().add(parameter(ParameterType.QUERY, "filter", STRING, null, null));
+        list.getMethodParameters().add(parameter(ParameterType.HEADER, "X-Tenant", STRING, null, "the tenant"));
+        list.getResponses().put(200, new Response(items));
+        resources.addMethod("items", list);
+        final ResourceMethod text = new ResourceMethod(HttpMethod.GET, "Lists the item names.");
+        text.getResponseMediaTypes().add("text/plain");
+        text.getMethodParameters().add(parameter(ParameterType.QUERY, "separator", STRING, ",", null));
+        text.getResponses().put(200, new Response(tags));
+        resources.addMethod("items", text);
+
+        final ResourceMethod create = new ResourceMethod(HttpMethod.POST, null);
+        create.getRequestMediaTypes().add("application/json");
+        create.getResponseMediaTypes().add("application/json");
+        create.setRequestBody(item);
+        create.setRequestBodyDescription("the item to create");
+        final Response created = new Response();
+        created.getHeaders().add("Location");
+        created.getHeaders().add("ETag");
+        create.getResponses().put(201, created);
+        create.getResponses().put(400, new Response(error));
+        resources.addMethod("items", create);
+
+        final ResourceMethod get = new ResourceMethod(HttpMethod.GET, "Reads an item.");
+        get.getMethodParameters().add(parameter(ParameterType.PATH, "id", TypeIdentifier.ofType("J"), null, "the item id"));
+        get.getResponses().put(200, new Response(item));
+        get.getResponses().put(404, new Response(error));
+        resources.addMethod("items/{id}", get);
+
+        final ResourceMethod update = new ResourceMethod(HttpMethod.PUT, "Updates an item.");
+        update.setDeprecated(true);
+        update.getRequestMediaTypes().add("application/x-www-form-urlencoded");
+        update.getMethodParameters().add(parameter(ParameterType.PATH, "id", TypeIdentifier.ofType("J"), null, null));
+        update.getMethodParameters().add(parameter(ParameterType.FORM, "status", status, null, null));
+        update.getMethodParameters().add(parameter(ParameterType.COOKIE, "session", STRING, null, null));
+        update.getResponses().put(204, new Response());
+        resources.addMethod("items/{id}", update);
+
+        final ResourceMethod download = new ResourceMethod(HttpMethod.GET, null);
+        download.getResponseMediaTypes().add("application/octet-stream");
+        download.getResponses().put(200, new Response(bytes));
+        resources.addMethod("files/{name}", download);
+        return new Project("operations", "2.1", resources);
+    }
+
+    private static MethodParameter parameter(final ParameterType type, final String name, final TypeIdentifier identifier,
+            final String defaultValue, final String description) {
+        final MethodParameter parameter = new MethodParameter(identifier, type);
+        parameter.setName(name);
+        parameter.setDefaultValue(defaultValue);
+        parameter.setDescription(description);
+        return parameter;
+    }
+
+    static TypeIdentifier addType(final Resources resources, final String type, final Map<String, TypeIdentifier> properties) {
+        final TypeIdentifier identifier = TypeIdentifier.ofType(type);
+        resources.getTypeRepresentations().put(identifier, TypeRepresentation.ofConcrete(identifier, properties));
+        return identifier;
+    }
+
+    static TypeIdentifier addType(final Resources resources, final String type) {
+        return addType(resources, type, Collections.emptyMap());
+    }
+
+    static void addGet(final Resources resources, final String path, final TypeIdentifier response) {
+        final ResourceMethod method = new ResourceMethod(HttpMethod.GET, null);
+        method.getResponses().put(200, new Response(response));
+        resources.addMethod(path, method);
+    }
+
+    static JsonObject read(final byte[] json) {
+        try (final JsonReader reader = Json.createReader(new ByteArrayInputStream(json))) {
+            return reader.readObject();
+        }
+    }
+
+    static String toString(final byte[] output) {
+        return new String(output, UTF_8);
+    }
+}